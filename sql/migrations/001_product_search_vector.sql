@@ -0,0 +1,22 @@
+-- Full-text search over products for search mode "fulltext", for databases created before it;
+-- sql/ecommerce.SQL already has it. Run once, with psql and outside a transaction block, before
+-- deploying the release that searches it: psql -d db_ecommerce -f sql/migrations/001_product_search_vector.sql
+--
+-- The 'simple' configuration lowercases without stemming, so Indonesian and English names match
+-- alike. Adding a stored generated column rewrites products under an exclusive lock, so run it
+-- off-peak; lock_timeout makes it give up rather than queue every other query behind it while it
+-- waits for a long transaction.
+SET lock_timeout = '5s';
+
+ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+        setweight(to_tsvector('simple', coalesce(category, '')), 'B') ||
+        setweight(to_tsvector('simple', coalesce(description, '')), 'C')
+    ) STORED;
+
+RESET lock_timeout;
+
+-- Built without blocking writes. If it fails it leaves an INVALID index behind: drop it
+-- (DROP INDEX CONCURRENTLY idx_products_search_vector) and run this file again.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_search_vector ON products USING GIN (search_vector);
@@ -0,0 +1,10 @@
+-- Trigram index on the lowercased name, for databases created before it; sql/ecommerce.SQL
+-- already has it. It backs the default substring search (lower(name) LIKE) and the
+-- word-similarity match of search mode "fuzzy". Run once, with psql and outside a transaction
+-- block, by a role allowed to create extensions, before deploying the release that uses it:
+-- psql -d db_ecommerce -f sql/migrations/002_product_name_trigram.sql
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Built without blocking writes. If it fails it leaves an INVALID index behind: drop it
+-- (DROP INDEX CONCURRENTLY idx_products_name_trgm) and run this file again.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_name_trgm ON products USING GIN (lower(name) gin_trgm_ops);
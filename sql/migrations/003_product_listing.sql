@@ -0,0 +1,60 @@
+-- Sorted and cursor-paged product listings (ProductSort), for databases created before them;
+-- sql/ecommerce.SQL already has all of this. Run once, with psql and outside a transaction block,
+-- before deploying the release that sorts and scrolls listings:
+-- psql -d db_ecommerce -f sql/migrations/003_product_listing.sql
+--
+-- A keyset predicate can only start an index scan when the sort key is never NULL, so the sort
+-- columns are backfilled and made NOT NULL first.
+
+-- Only rows still NULL are touched (and row-locked), each column in its own transaction under
+-- psql's autocommit.
+UPDATE products SET rating = 0 WHERE rating IS NULL;
+UPDATE products SET sold_for = 0 WHERE sold_for IS NULL;
+UPDATE products SET created_at = coalesce(updated_at, now()) WHERE created_at IS NULL;
+
+-- SET NOT NULL scans the whole table under an exclusive lock, unless a validated CHECK constraint
+-- already proves it. The constraint is added NOT VALID (a brief lock, no scan) and validated
+-- while reads and writes go on; the NOT NULLs then only take the lock for a moment. lock_timeout
+-- makes the ALTERs give up rather than queue every other query behind them while they wait for
+-- a long transaction; run the file again if one does.
+SET lock_timeout = '5s';
+
+ALTER TABLE products
+    ALTER COLUMN rating SET DEFAULT 0,
+    ALTER COLUMN sold_for SET DEFAULT 0,
+    ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+
+ALTER TABLE products DROP CONSTRAINT IF EXISTS products_sort_keys_not_null;
+ALTER TABLE products ADD CONSTRAINT products_sort_keys_not_null
+    CHECK (rating IS NOT NULL AND sold_for IS NOT NULL AND created_at IS NOT NULL) NOT VALID;
+ALTER TABLE products VALIDATE CONSTRAINT products_sort_keys_not_null;
+
+ALTER TABLE products
+    ALTER COLUMN rating SET NOT NULL,
+    ALTER COLUMN sold_for SET NOT NULL,
+    ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE products DROP CONSTRAINT products_sort_keys_not_null;
+
+RESET lock_timeout;
+
+-- Every sort has a (key, id) index for the whole catalog, a (store_id, key, id) one for a store's
+-- products and a (category, key, id) one for a category's; descending sorts scan them backwards.
+-- A store and a category together use the store's index: a store's products are few enough to
+-- filter by category as they're read. Built without blocking writes; one that fails is left
+-- INVALID: drop it with DROP INDEX CONCURRENTLY and run this file again.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_price_id ON products (price, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_rating_id ON products (rating, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_sold_for_id ON products (sold_for, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_created_at_id ON products (created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_store_id_id ON products (store_id, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_store_id_price_id ON products (store_id, price, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_store_id_rating_id ON products (store_id, rating, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_store_id_sold_for_id ON products (store_id, sold_for, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_store_id_created_at_id ON products (store_id, created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_category_id ON products (category, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_category_price_id ON products (category, price, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_category_rating_id ON products (category, rating, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_category_sold_for_id ON products (category, sold_for, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_products_category_created_at_id ON products (category, created_at, id);
@@ -0,0 +1,12 @@
+package com.pretest.ecommerce.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * Fills {@code BaseEntity}'s created and updated timestamps.
+ */
+@Configuration
+@EnableJpaAuditing
+public class JpaConfig {
+}
@@ -0,0 +1,27 @@
+package com.pretest.ecommerce.config;
+
+import com.pretest.ecommerce.security.TokenCache;
+import com.pretest.ecommerce.security.TokenDenylist;
+import com.pretest.ecommerce.service.ProductCache;
+import com.pretest.ecommerce.service.ProductIndex;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+            TokenCache tokenCache, TokenDenylist tokenDenylist, ProductIndex productIndex, ProductCache productCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(tokenCache, new ChannelTopic(TokenCache.INVALIDATION_CHANNEL));
+        container.addMessageListener(tokenDenylist, new ChannelTopic(TokenDenylist.REVOCATION_CHANNEL));
+        container.addMessageListener(productIndex, new ChannelTopic(ProductIndex.CHANGE_CHANNEL));
+        container.addMessageListener(productCache, new ChannelTopic(ProductCache.EVICTION_CHANNEL));
+        return container;
+    }
+}
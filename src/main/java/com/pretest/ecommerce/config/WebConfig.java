@@ -1,17 +1,42 @@
 package com.pretest.ecommerce.config;
 
+import com.pretest.ecommerce.security.AuthenticationFilter;
+import com.pretest.ecommerce.security.ConcurrencyLimitFilter;
+import com.pretest.ecommerce.security.CurrentUserArgumentResolver;
 import com.pretest.ecommerce.security.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
 
 @Configuration
-public class WebConfig {
+public class WebConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private AuthenticationFilter authenticationFilter;
 
     @Autowired
     private RateLimitFilter rateLimitFilter;
 
+    @Autowired
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @Autowired
+    private CurrentUserArgumentResolver currentUserArgumentResolver;
+
+    @Bean
+    public FilterRegistrationBean<AuthenticationFilter> authenticationFilterRegistration() {
+        FilterRegistrationBean<AuthenticationFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(authenticationFilter);
+        registrationBean.addUrlPatterns("/api/*");
+        registrationBean.setOrder(3);
+        return registrationBean;
+    }
+
     @Bean
     public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration() {
         FilterRegistrationBean<RateLimitFilter> registrationBean = new FilterRegistrationBean<>();
@@ -20,4 +45,18 @@ public class WebConfig {
         registrationBean.setOrder(1);
         return registrationBean;
     }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registrationBean = new FilterRegistrationBean<>();
+        registrationBean.setFilter(concurrencyLimitFilter);
+        registrationBean.addUrlPatterns("/api/*");
+        registrationBean.setOrder(2);
+        return registrationBean;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);
+    }
 }
@@ -3,9 +3,12 @@ package com.pretest.ecommerce.controller;
 import com.pretest.ecommerce.dto.RegisterResponse;
 import com.pretest.ecommerce.dto.LoginRequest;
 import com.pretest.ecommerce.dto.RegisterRequest;
+import com.pretest.ecommerce.dto.SessionResponse;
 import com.pretest.ecommerce.dto.TokenResponse;
 import com.pretest.ecommerce.dto.WebResponse;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.AuthPrincipal;
+import com.pretest.ecommerce.security.CurrentUser;
 import com.pretest.ecommerce.service.AuthService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +17,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
 import javax.print.attribute.standard.Media;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -80,4 +84,23 @@ public class AuthController {
                                 .data("Logout Success")
                                 .build();
         }
+
+        @GetMapping(path = "/sessions", produces = MediaType.APPLICATION_JSON_VALUE)
+        public WebResponse<List<SessionResponse>> getSessions(@CurrentUser AuthPrincipal principal) {
+                List<SessionResponse> sessions = authService.getSessions(principal.getUserId());
+                return WebResponse.<List<SessionResponse>>builder()
+                                .success(true)
+                                .message("Successfully get sessions")
+                                .data(sessions)
+                                .build();
+        }
+
+        @DeleteMapping(path = "/sessions", produces = MediaType.APPLICATION_JSON_VALUE)
+        public WebResponse<String> revokeAllSessions(@CurrentUser AuthPrincipal principal) {
+                authService.revokeAllSessions(principal.getUserId());
+                return WebResponse.<String>builder()
+                                .success(true)
+                                .data("Logout Success")
+                                .build();
+        }
 }
@@ -3,7 +3,8 @@ package com.pretest.ecommerce.controller;
 import com.pretest.ecommerce.dto.AddToCartRequest;
 import com.pretest.ecommerce.dto.CartResponse;
 import com.pretest.ecommerce.dto.WebResponse;
-import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.security.AuthPrincipal;
+import com.pretest.ecommerce.security.CurrentUser;
 import com.pretest.ecommerce.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -18,14 +19,11 @@ public class CartController {
         @Autowired
         private CartService cartService;
 
-        @Autowired
-        private AuthService authService;
-
         @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<CartResponse> addToCart(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser AuthPrincipal principal,
                         @RequestBody AddToCartRequest request) {
-                UUID userId = authService.extractUserIdFromToken(token);
+                UUID userId = principal.getUserId();
                 CartResponse response = cartService.addToCart(userId, request);
                 return WebResponse.<CartResponse>builder()
                                 .success(true)
@@ -36,8 +34,8 @@ public class CartController {
 
         @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<CartResponse> getCart(
-                        @RequestHeader("Authorization") String token) {
-                UUID userId = authService.extractUserIdFromToken(token);
+                        @CurrentUser AuthPrincipal principal) {
+                UUID userId = principal.getUserId();
                 CartResponse response = cartService.getCart(userId);
                 return WebResponse.<CartResponse>builder()
                                 .success(true)
@@ -48,9 +46,9 @@ public class CartController {
 
         @DeleteMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<CartResponse> deleteCartItem(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser AuthPrincipal principal,
                         @PathVariable("id") Long cartItemId) {
-                UUID userId = authService.extractUserIdFromToken(token);
+                UUID userId = principal.getUserId();
                 CartResponse response = cartService.removeCartItem(userId, cartItemId);
                 return WebResponse.<CartResponse>builder()
                                 .success(true)
@@ -61,10 +59,10 @@ public class CartController {
 
         @PutMapping(path = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<CartResponse> updateCartItem(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser AuthPrincipal principal,
                         @PathVariable("id") Long cartItemId,
                         @RequestBody com.pretest.ecommerce.dto.UpdateCartRequest request) {
-                UUID userId = authService.extractUserIdFromToken(token);
+                UUID userId = principal.getUserId();
                 CartResponse response = cartService.updateCartItem(userId, cartItemId, request);
                 return WebResponse.<CartResponse>builder()
                                 .success(true)
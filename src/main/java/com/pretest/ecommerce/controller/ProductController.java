@@ -2,7 +2,7 @@ package com.pretest.ecommerce.controller;
 
 import com.pretest.ecommerce.dto.*;
 import com.pretest.ecommerce.entity.User;
-import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.security.CurrentUser;
 import com.pretest.ecommerce.service.ImageService;
 import com.pretest.ecommerce.service.ProductService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,15 +18,12 @@ public class ProductController {
         @Autowired
         private ProductService productService;
 
-        @Autowired
-        private AuthService authService;
-
         @Autowired
         private ImageService imageService;
 
         @PostMapping(path = "/api/stores/{storeId}/products", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<ProductResponse> create(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("storeId") Long storeId,
                         @RequestParam("name") String name,
                         @RequestParam(value = "description", required = false) String description,
@@ -35,8 +32,6 @@ public class ProductController {
                         @RequestParam("category") String category,
                         @RequestParam(value = "color", required = false) String color,
                         @RequestParam(value = "imageUrl", required = false) MultipartFile imageFile) {
-                User user = authService.validateToken(token);
-
                 String imageUrl = null;
                 if (imageFile != null && !imageFile.isEmpty()) {
                         imageUrl = imageService.saveImage(imageFile);
@@ -73,11 +68,10 @@ public class ProductController {
 
         @PostMapping(path = "/api/products/{productId}/rate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<ProductResponse> rateProduct(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("productId") Long productId,
                         @RequestBody java.util.Map<String, Double> request) {
 
-                User user = authService.validateToken(token);
                 Double rating = request.get("rating");
 
                 ProductResponse response = productService.rateProduct(user, productId, rating);
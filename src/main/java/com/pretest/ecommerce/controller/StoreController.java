@@ -2,11 +2,14 @@ package com.pretest.ecommerce.controller;
 
 import com.pretest.ecommerce.dto.*;
 import com.pretest.ecommerce.entity.User;
-import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.security.CurrentUser;
+import com.pretest.ecommerce.service.CountMode;
 import com.pretest.ecommerce.service.ProductService;
 import com.pretest.ecommerce.service.StoreService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
@@ -26,20 +29,15 @@ public class StoreController {
         @Autowired
         private ProductService productService;
 
-        @Autowired
-        private AuthService authService;
-
         @Autowired
         private com.pretest.ecommerce.service.ImageService imageService;
 
         @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<StoreResponse> create(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @RequestParam("name") String name,
                         @RequestParam("location") String location,
                         @RequestParam(value = "imageUrl", required = false) MultipartFile imageFile) {
-                User user = authService.validateToken(token);
-
                 String imageUrl = null;
                 if (imageFile != null && !imageFile.isEmpty()) {
                         imageUrl = imageService.saveImage(imageFile);
@@ -61,9 +59,8 @@ public class StoreController {
 
         @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<StoreResponse> create(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @RequestBody CreateStoreRequest request) {
-                User user = authService.validateToken(token);
                 StoreResponse response = storeService.create(user, request);
 
                 return WebResponse.<StoreResponse>builder()
@@ -74,12 +71,10 @@ public class StoreController {
         }
 
         @PostMapping(path = { "/my-store", "/my-store-update" }, produces = MediaType.APPLICATION_JSON_VALUE)
-        public WebResponse<StoreResponse> updateStore(@RequestHeader("Authorization") String token,
+        public WebResponse<StoreResponse> updateStore(@CurrentUser User user,
                         @RequestParam(value = "name", required = false) String name,
                         @RequestParam(value = "location", required = false) String location,
                         @RequestParam(value = "imageUrl", required = false) MultipartFile imageFile) {
-                User user = authService.validateToken(token);
-
                 String imageUrl = null;
                 if (imageFile != null && !imageFile.isEmpty()) {
                         imageUrl = imageService.saveImage(imageFile);
@@ -102,9 +97,8 @@ public class StoreController {
 
         @PostMapping(path = { "/my-store",
                         "/my-store-update" }, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-        public WebResponse<StoreResponse> updateStore(@RequestHeader("Authorization") String token,
+        public WebResponse<StoreResponse> updateStore(@CurrentUser User user,
                         @RequestBody com.pretest.ecommerce.dto.UpdateStoreRequest request) {
-                User user = authService.validateToken(token);
                 StoreResponse storeResponse = storeService.update(user, request);
                 return WebResponse.<StoreResponse>builder()
                                 .success(true)
@@ -116,18 +110,16 @@ public class StoreController {
         @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<List<StoreResponse>> list(
                         @RequestParam(name = "page", defaultValue = "0") Integer page,
-                        @RequestParam(name = "size", defaultValue = "10") Integer size) {
-                Page<StoreResponse> result = storeService.findAll(page, size);
+                        @RequestParam(name = "size", defaultValue = "10") Integer size,
+                        @RequestParam(name = "count", required = false) String count) {
+                CountMode countMode = CountMode.of(count);
+                Slice<StoreResponse> result = storeService.findAll(page, size, countMode);
 
                 return WebResponse.<List<StoreResponse>>builder()
                                 .success(true)
                                 .message("Successfully get all stores")
                                 .data(result.getContent())
-                                .paging(PagingResponse.builder()
-                                                .currentPage(result.getNumber())
-                                                .totalPage(result.getTotalPages())
-                                                .limit(result.getSize())
-                                                .build())
+                                .paging(PagingResponse.of(result, countMode))
                                 .build();
         }
 
@@ -149,28 +141,23 @@ public class StoreController {
         @GetMapping(path = "/{storeId}/products", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<List<ProductResponse>> listProducts(
                         @PathVariable("storeId") Long storeId,
+                        @RequestParam(value = "sort", required = false) String sort,
+                        @RequestParam(value = "cursor", required = false) String cursor,
+                        @RequestParam(value = "count", required = false) String count,
                         @RequestParam(value = "page", defaultValue = "0") Integer page,
                         @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
 
                 com.pretest.ecommerce.dto.SearchProductRequest request = com.pretest.ecommerce.dto.SearchProductRequest
                                 .builder()
                                 .storeId(storeId)
+                                .sort(sort)
+                                .cursor(cursor)
+                                .count(count)
                                 .page(page)
                                 .limit(limit)
                                 .build();
 
-                Page<ProductResponse> result = productService.search(request);
-
-                return WebResponse.<List<ProductResponse>>builder()
-                                .success(true)
-                                .message("Successfully get store products")
-                                .data(result.getContent())
-                                .paging(PagingResponse.builder()
-                                                .currentPage(result.getNumber())
-                                                .totalPage(result.getTotalPages())
-                                                .limit(result.getSize())
-                                                .build())
-                                .build();
+                return listProducts(request, "Successfully get store products");
         }
 
         @GetMapping(path = "/{storeId}", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -185,8 +172,7 @@ public class StoreController {
         }
 
         @GetMapping(path = "/my-store", produces = MediaType.APPLICATION_JSON_VALUE)
-        public WebResponse<StoreResponse> getMyStore(@RequestHeader("Authorization") String token) {
-                User user = authService.validateToken(token);
+        public WebResponse<StoreResponse> getMyStore(@CurrentUser User user) {
                 StoreResponse storeResponse = storeService.findByUser(user);
                 return WebResponse.<StoreResponse>builder()
                                 .success(true)
@@ -197,30 +183,27 @@ public class StoreController {
 
         @GetMapping(path = "/my-store/products", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<List<ProductResponse>> getMyStoreProducts(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
+                        @RequestParam(value = "count", required = false) String count,
                         @RequestParam(value = "page", defaultValue = "0") Integer page,
                         @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
-                User user = authService.validateToken(token);
                 StoreResponse myStore = storeService.findByUser(user);
 
                 com.pretest.ecommerce.dto.SearchProductRequest request = com.pretest.ecommerce.dto.SearchProductRequest
                                 .builder()
                                 .storeId(myStore.getId())
+                                .count(count)
                                 .page(page)
                                 .limit(limit)
                                 .build();
 
-                Page<ProductResponse> result = productService.search(request);
+                Slice<ProductResponse> result = productService.search(request);
 
                 return WebResponse.<List<ProductResponse>>builder()
                                 .success(true)
                                 .message("Successfully get my store products")
                                 .data(result.getContent())
-                                .paging(PagingResponse.builder()
-                                                .currentPage(result.getNumber())
-                                                .totalPage(result.getTotalPages())
-                                                .limit(result.getSize())
-                                                .build())
+                                .paging(PagingResponse.of(result, CountMode.of(count)))
                                 .build();
         }
 
@@ -228,39 +211,106 @@ public class StoreController {
         public WebResponse<List<ProductResponse>> listAllProducts(
                         @RequestParam(value = "name", required = false) String name,
                         @RequestParam(value = "category", required = false) String category,
+                        @RequestParam(value = "color", required = false) String color,
                         @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
                         @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
                         @RequestParam(value = "storeId", required = false) Long storeId,
+                        @RequestParam(value = "mode", required = false) String mode,
+                        @RequestParam(value = "terms", required = false) String terms,
+                        @RequestParam(value = "sort", required = false) String sort,
+                        @RequestParam(value = "cursor", required = false) String cursor,
+                        @RequestParam(value = "count", required = false) String count,
                         @RequestParam(value = "page", defaultValue = "0") Integer page,
                         @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
                 com.pretest.ecommerce.dto.SearchProductRequest request = com.pretest.ecommerce.dto.SearchProductRequest
                                 .builder()
                                 .name(name)
                                 .category(category)
+                                .color(color)
                                 .minPrice(minPrice)
                                 .maxPrice(maxPrice)
                                 .storeId(storeId)
+                                .mode(mode)
+                                .terms(terms)
+                                .sort(sort)
+                                .cursor(cursor)
+                                .count(count)
                                 .page(page)
                                 .limit(limit)
                                 .build();
 
-                Page<ProductResponse> result = productService.search(request);
+                return listProducts(request, "Successfully get all products");
+        }
 
-                return WebResponse.<List<ProductResponse>>builder()
+        @GetMapping(path = "/products/facets", produces = MediaType.APPLICATION_JSON_VALUE)
+        public WebResponse<FacetedProductsResponse> listAllProductsWithFacets(
+                        @RequestParam(value = "name", required = false) String name,
+                        @RequestParam(value = "category", required = false) String category,
+                        @RequestParam(value = "color", required = false) String color,
+                        @RequestParam(value = "minPrice", required = false) BigDecimal minPrice,
+                        @RequestParam(value = "maxPrice", required = false) BigDecimal maxPrice,
+                        @RequestParam(value = "storeId", required = false) Long storeId,
+                        @RequestParam(value = "terms", required = false) String terms,
+                        @RequestParam(value = "facets", required = false) List<String> facets,
+                        @RequestParam(value = "page", defaultValue = "0") Integer page,
+                        @RequestParam(value = "limit", defaultValue = "10") Integer limit) {
+                com.pretest.ecommerce.dto.SearchProductRequest request = com.pretest.ecommerce.dto.SearchProductRequest
+                                .builder()
+                                .name(name)
+                                .category(category)
+                                .color(color)
+                                .minPrice(minPrice)
+                                .maxPrice(maxPrice)
+                                .storeId(storeId)
+                                .terms(terms)
+                                .page(page)
+                                .limit(limit)
+                                .build();
+
+                FacetedProductsResponse response = productService.facets(request, facets);
+
+                return WebResponse.<FacetedProductsResponse>builder()
                                 .success(true)
                                 .message("Successfully get all products")
+                                .data(response)
+                                .paging(PagingResponse.of(new PageImpl<>(response.getProducts(),
+                                                PageRequest.of(page, limit), response.getTotal())))
+                                .build();
+        }
+
+        /**
+         * A page of products: by cursor when the request has one (an empty cursor is the first
+         * page), by page number otherwise.
+         */
+        private WebResponse<List<ProductResponse>> listProducts(
+                        com.pretest.ecommerce.dto.SearchProductRequest request, String message) {
+                if (request.getCursor() != null) {
+                        Slice<ProductResponse> result = productService.scroll(request);
+                        return WebResponse.<List<ProductResponse>>builder()
+                                        .success(true)
+                                        .message(message)
+                                        .data(result.getContent())
+                                        .paging(PagingResponse.builder()
+                                                        .limit(result.getSize())
+                                                        .hasNext(result.hasNext())
+                                                        .nextCursor(productService.nextCursor(request, result))
+                                                        .build())
+                                        .build();
+                }
+
+                Slice<ProductResponse> result = productService.search(request);
+
+                return WebResponse.<List<ProductResponse>>builder()
+                                .success(true)
+                                .message(message)
                                 .data(result.getContent())
-                                .paging(PagingResponse.builder()
-                                                .currentPage(result.getNumber())
-                                                .totalPage(result.getTotalPages())
-                                                .limit(result.getSize())
-                                                .build())
+                                .paging(PagingResponse.of(result, CountMode.of(request.getCount())))
                                 .build();
         }
 
         @PutMapping(path = "/my-store/products/{productId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<ProductResponse> updateProductMyStore(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("productId") Long productId,
                         @RequestParam(value = "name", required = false) String name,
                         @RequestParam(value = "description", required = false) String description,
@@ -269,8 +319,6 @@ public class StoreController {
                         @RequestParam(value = "category", required = false) String category,
                         @RequestParam(value = "color", required = false) String color,
                         @RequestParam(value = "imageUrl", required = false) org.springframework.web.multipart.MultipartFile imageFile) {
-                User user = authService.validateToken(token);
-
                 String imageUrl = null;
                 if (imageFile != null && !imageFile.isEmpty()) {
                         imageUrl = imageService.saveImage(imageFile);
@@ -297,9 +345,8 @@ public class StoreController {
 
         @DeleteMapping(path = "/my-store/products/{productId}", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<String> deleteProductMyStore(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("productId") Long productId) {
-                User user = authService.validateToken(token);
                 productService.delete(user, productId);
                 return WebResponse.<String>builder()
                                 .success(true)
@@ -309,7 +356,7 @@ public class StoreController {
 
         @PostMapping(path = "/my-store/products", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<ProductResponse> createProductMyStore(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @RequestParam("name") String name,
                         @RequestParam(value = "description", required = false) String description,
                         @RequestParam("price") BigDecimal price,
@@ -317,8 +364,6 @@ public class StoreController {
                         @RequestParam("category") String category,
                         @RequestParam(value = "color", required = false) String color,
                         @RequestParam(value = "imageUrl", required = false) MultipartFile imageFile) {
-                User user = authService.validateToken(token);
-
                 StoreResponse myStore = storeService.findByUser(user);
 
                 String imageUrl = null;
@@ -346,8 +391,7 @@ public class StoreController {
         }
 
         @DeleteMapping(path = "/my-store", produces = MediaType.APPLICATION_JSON_VALUE)
-        public WebResponse<String> deleteMyStore(@RequestHeader("Authorization") String token) {
-                User user = authService.validateToken(token);
+        public WebResponse<String> deleteMyStore(@CurrentUser User user) {
                 storeService.delete(user);
                 return WebResponse.<String>builder()
                                 .success(true)
@@ -357,9 +401,8 @@ public class StoreController {
 
         @PostMapping(path = "/{storeId}/follow", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<String> followStore(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("storeId") Long storeId) {
-                User user = authService.validateToken(token);
                 storeService.followStore(user, storeId);
                 return WebResponse.<String>builder()
                                 .success(true)
@@ -369,9 +412,8 @@ public class StoreController {
 
         @DeleteMapping(path = "/{storeId}/unfollow", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<String> unfollowStore(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser User user,
                         @PathVariable("storeId") Long storeId) {
-                User user = authService.validateToken(token);
                 storeService.unfollowStore(user, storeId);
                 return WebResponse.<String>builder()
                                 .success(true)
@@ -3,11 +3,12 @@ package com.pretest.ecommerce.controller;
 import com.pretest.ecommerce.dto.PagingResponse;
 import com.pretest.ecommerce.dto.TransactionResponse;
 import com.pretest.ecommerce.dto.WebResponse;
-import com.pretest.ecommerce.entity.User;
-import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.security.AuthPrincipal;
+import com.pretest.ecommerce.security.CurrentUser;
+import com.pretest.ecommerce.service.CountMode;
 import com.pretest.ecommerce.service.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,38 +21,30 @@ public class TransactionController {
         @Autowired
         private TransactionService transactionService;
 
-        @Autowired
-        private AuthService authService;
-
         @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<List<TransactionResponse>> list(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser AuthPrincipal principal,
                         @RequestParam(name = "status", required = false) String status,
+                        @RequestParam(name = "count", required = false) String count,
                         @RequestParam(name = "page", defaultValue = "0") Integer page,
                         @RequestParam(name = "limit", defaultValue = "10") Integer limit) {
-
-                User user = authService.validateToken(token);
-                Page<TransactionResponse> result = transactionService.getUserTransactions(user, page, limit, status);
+                CountMode countMode = CountMode.of(count);
+                Slice<TransactionResponse> result = transactionService.getUserTransactions(principal.getUserId(), page,
+                                limit, status, countMode);
 
                 return WebResponse.<List<TransactionResponse>>builder()
                                 .success(true)
                                 .message("Successfully retrieved transactions")
                                 .data(result.getContent())
-                                .paging(PagingResponse.builder()
-                                                .currentPage(result.getNumber())
-                                                .totalPage(result.getTotalPages())
-                                                .limit(result.getSize())
-                                                .build())
+                                .paging(PagingResponse.of(result, countMode))
                                 .build();
         }
 
         @GetMapping(path = "/{invoiceNumber}", produces = MediaType.APPLICATION_JSON_VALUE)
         public WebResponse<TransactionResponse> get(
-                        @RequestHeader("Authorization") String token,
+                        @CurrentUser AuthPrincipal principal,
                         @PathVariable("invoiceNumber") String invoiceNumber) {
-
-                User user = authService.validateToken(token);
-                TransactionResponse response = transactionService.getTransactionByInvoice(user, invoiceNumber);
+                TransactionResponse response = transactionService.getTransactionByInvoice(principal.getUserId(), invoiceNumber);
 
                 return WebResponse.<TransactionResponse>builder()
                                 .success(true)
@@ -61,9 +54,8 @@ public class TransactionController {
         }
 
         @PostMapping(path = "/checkout", produces = MediaType.APPLICATION_JSON_VALUE)
-        public WebResponse<List<TransactionResponse>> checkout(@RequestHeader("Authorization") String token) {
-                User user = authService.validateToken(token);
-                List<TransactionResponse> result = transactionService.checkout(user.getId());
+        public WebResponse<List<TransactionResponse>> checkout(@CurrentUser AuthPrincipal principal) {
+                List<TransactionResponse> result = transactionService.checkout(principal.getUserId());
 
                 return WebResponse.<List<TransactionResponse>>builder()
                                 .success(true)
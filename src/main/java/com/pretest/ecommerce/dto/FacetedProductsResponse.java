@@ -0,0 +1,22 @@
+package com.pretest.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FacetedProductsResponse {
+    private List<ProductResponse> products;
+    private Long total;
+    private List<FacetCount> categories;
+    private List<PriceFacetCount> prices;
+    private List<FacetCount> stores;
+}
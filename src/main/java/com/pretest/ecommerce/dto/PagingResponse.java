@@ -1,16 +1,47 @@
 package com.pretest.ecommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.pretest.ecommerce.service.CountMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PagingResponse {
     private Integer currentPage;
     private Integer totalPage;
+    /** Set when {@code totalPage} may be the planner's estimate rather than a count. */
+    private Boolean totalEstimated;
     private Integer limit;
+    private Boolean hasNext;
+    private String nextCursor;
+
+    /**
+     * Paging of {@code result}; the total page count only when it was counted.
+     */
+    public static PagingResponse of(Slice<?> result) {
+        return of(result, CountMode.EXACT);
+    }
+
+    /**
+     * Paging of {@code result} listed in {@code count} mode: no total page count for
+     * {@link CountMode#NONE}, and one flagged as estimated for {@link CountMode#ESTIMATE}.
+     */
+    public static PagingResponse of(Slice<?> result, CountMode count) {
+        Integer totalPage = result instanceof Page<?> page ? page.getTotalPages() : null;
+        return PagingResponse.builder()
+                .currentPage(result.getNumber())
+                .totalPage(totalPage)
+                .totalEstimated(totalPage != null && count == CountMode.ESTIMATE ? Boolean.TRUE : null)
+                .limit(result.getSize())
+                .hasNext(result.hasNext())
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.pretest.ecommerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PriceFacetCount {
+    private BigDecimal from;
+    // exclusive; null for the open-ended top range
+    private BigDecimal to;
+    private Long count;
+}
@@ -0,0 +1,21 @@
+package com.pretest.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductDocument {
+    private Long id;
+    private String name;
+    private String category;
+    private String color;
+    private BigDecimal price;
+    private Long storeId;
+}
@@ -1,5 +1,6 @@
 package com.pretest.ecommerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,6 +15,8 @@ import java.math.BigDecimal;
 public class ProductResponse {
     private Long id;
     private String name;
+    // only on single products, listings leave it out
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String description;
     private BigDecimal price;
     private Integer stock;
@@ -28,4 +31,14 @@ public class ProductResponse {
     private BigDecimal storeRating;
     private java.time.LocalDateTime createdAt;
     private java.time.LocalDateTime updatedAt;
-}
\ No newline at end of file
+
+    /**
+     * A listing, without the description; the constructor {@code ProductListingRepository} selects into.
+     */
+    public ProductResponse(Long id, String name, BigDecimal price, Integer stock, String category, String imageUrl,
+            String color, Integer soldFor, Double rating, String storeName, String storeLocation, Long storeId,
+            BigDecimal storeRating, java.time.LocalDateTime createdAt, java.time.LocalDateTime updatedAt) {
+        this(id, name, null, price, stock, category, imageUrl, color, soldFor, rating, storeName, storeLocation,
+                storeId, storeRating, createdAt, updatedAt);
+    }
+}
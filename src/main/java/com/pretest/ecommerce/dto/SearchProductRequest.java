@@ -14,9 +14,15 @@ import java.math.BigDecimal;
 public class SearchProductRequest {
     private String name;
     private String category;
+    private String color;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
     private Long storeId;
+    private String mode;
+    private String terms;
+    private String sort;
+    private String cursor;
+    private String count;
 
     @Builder.Default
     private Integer page = 0;
@@ -0,0 +1,18 @@
+package com.pretest.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SessionResponse {
+    private String id;
+    private LocalDateTime issuedAt;
+    private LocalDateTime expiresAt;
+}
@@ -41,7 +41,7 @@ public class Store extends BaseEntity {
     @Column(name = "image_url")
     private String imageUrl;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
@@ -87,6 +87,7 @@ public class GlobalExceptionHandler {
         @ExceptionHandler(ResponseStatusException.class)
         public ResponseEntity<WebResponse<String>> handleAPIException(ResponseStatusException exception) {
                 return ResponseEntity.status(exception.getStatusCode())
+                        .headers(exception.getHeaders())
                         .body(WebResponse.<String>builder()
                                 .success(false)
                                 .message(exception.getReason())
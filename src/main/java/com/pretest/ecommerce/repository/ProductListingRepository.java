@@ -0,0 +1,71 @@
+package com.pretest.ecommerce.repository;
+
+import com.pretest.ecommerce.dto.ProductResponse;
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.entity.Store;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Repository;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Product listings read straight into {@link ProductResponse}: one statement selecting only the
+ * columns a list shows, joined to the store, so no entity, store lookup or {@code description}
+ * is loaded. Single products keep going through {@link ProductRepository}.
+ */
+@Repository
+public class ProductListingRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Up to {@code limit} listings of the products {@code specification} matches, from
+     * {@code offset}, in the order it sets.
+     */
+    public List<ProductResponse> findAll(Specification<Product> specification, long offset, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductResponse> query = builder.createQuery(ProductResponse.class);
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Store> store = root.join("store");
+        query.select(builder.construct(ProductResponse.class,
+                root.get("id"), root.get("name"), root.get("price"), root.get("stock"), root.get("category"),
+                root.get("imageUrl"), root.get("color"), root.get("soldFor"), root.get("rating"),
+                store.get("name"), store.get("location"), store.get("id"), store.get("rating"),
+                root.get("createdAt"), root.get("updatedAt")));
+        Predicate restriction = specification.toPredicate(root, query, builder);
+        if (restriction != null) {
+            query.where(restriction);
+        }
+        return entityManager.createQuery(query)
+                .setFirstResult((int) offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Listings of the products with these ids, in the order of {@code ids}; missing ones are left out.
+     */
+    public List<ProductResponse> findAllById(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        List<ProductResponse> listings = findAll((root, query, builder) -> root.get("id").in(ids), 0, ids.size());
+        listings.sort(Comparator.comparing(listing -> positions.get(listing.getId())));
+        return listings;
+    }
+}
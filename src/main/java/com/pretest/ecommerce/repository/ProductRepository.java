@@ -1,13 +1,119 @@
 package com.pretest.ecommerce.repository;
 
+import com.pretest.ecommerce.dto.ProductDocument;
 import com.pretest.ecommerce.entity.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
 
     @org.springframework.data.jpa.repository.Query("SELECT AVG(p.rating) FROM Product p WHERE p.store.id = :storeId")
     Double getAverageRatingByStoreId(Long storeId);
+
+    /**
+     * A product with its store, in one statement.
+     */
+    @EntityGraph(attributePaths = "store")
+    Optional<Product> findWithStoreById(Long id);
+
+    /**
+     * What {@code ProductIndex} indexes, for up to a page of products after id {@code after}, in id order.
+     */
+    @Query("""
+            SELECT new com.pretest.ecommerce.dto.ProductDocument(p.id, p.name, p.category, p.color, p.price, p.store.id)
+            FROM Product p WHERE p.id > :after ORDER BY p.id
+            """)
+    List<ProductDocument> findDocuments(Long after, Pageable pageable);
+
+    /**
+     * Ids of the products matching a web-search style query ({@code "exact phrase"}, {@code or},
+     * {@code -word}) against name, category and description, best {@code ts_rank} first. Served by
+     * the GIN index on {@code search_vector}; null filters are ignored. Not counted, see
+     * {@link #countFullText}.
+     */
+    @Query(value = """
+            SELECT p.id FROM products p, websearch_to_tsquery('simple', :query) q
+            WHERE p.search_vector @@ q
+              AND (CAST(:category AS varchar) IS NULL OR p.category = :category)
+              AND (CAST(:color AS varchar) IS NULL OR p.color = :color)
+              AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice)
+              AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice)
+              AND (CAST(:storeId AS bigint) IS NULL OR p.store_id = :storeId)
+            ORDER BY ts_rank(p.search_vector, q) DESC, p.id
+            """, nativeQuery = true)
+    Slice<Long> searchFullText(String query, String category, String color, BigDecimal minPrice,
+            BigDecimal maxPrice, Long storeId, Pageable pageable);
+
+    @Query(value = """
+            SELECT count(*) FROM products p, websearch_to_tsquery('simple', :query) q
+            WHERE p.search_vector @@ q
+              AND (CAST(:category AS varchar) IS NULL OR p.category = :category)
+              AND (CAST(:color AS varchar) IS NULL OR p.color = :color)
+              AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice)
+              AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice)
+              AND (CAST(:storeId AS bigint) IS NULL OR p.store_id = :storeId)
+            """, nativeQuery = true)
+    long countFullText(String query, String category, String color, BigDecimal minPrice, BigDecimal maxPrice,
+            Long storeId);
+
+    /**
+     * Ids of the products whose name contains something close to {@code query}, typos included,
+     * most similar first. Matches are pairs above {@code pg_trgm.word_similarity_threshold}, see
+     * {@link #configureFuzzySearch}; served by the trigram index on {@code lower(name)}. Not
+     * counted, see {@link #countFuzzy}.
+     */
+    @Query(value = """
+            SELECT p.id FROM products p
+            WHERE lower(:query) <% lower(p.name)
+              AND (CAST(:category AS varchar) IS NULL OR p.category = :category)
+              AND (CAST(:color AS varchar) IS NULL OR p.color = :color)
+              AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice)
+              AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice)
+              AND (CAST(:storeId AS bigint) IS NULL OR p.store_id = :storeId)
+            ORDER BY word_similarity(lower(:query), lower(p.name)) DESC, p.id
+            """, nativeQuery = true)
+    Slice<Long> searchFuzzy(String query, String category, String color, BigDecimal minPrice,
+            BigDecimal maxPrice, Long storeId, Pageable pageable);
+
+    @Query(value = """
+            SELECT count(*) FROM products p
+            WHERE lower(:query) <% lower(p.name)
+              AND (CAST(:category AS varchar) IS NULL OR p.category = :category)
+              AND (CAST(:color AS varchar) IS NULL OR p.color = :color)
+              AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice)
+              AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice)
+              AND (CAST(:storeId AS bigint) IS NULL OR p.store_id = :storeId)
+            """, nativeQuery = true)
+    long countFuzzy(String query, String category, String color, BigDecimal minPrice, BigDecimal maxPrice,
+            Long storeId);
+
+    /**
+     * Sets the similarity {@link #searchFuzzy} requires and a statement timeout (ms), and plans
+     * statements per query as {@link #forceCustomPlans} does, for the rest of the current
+     * transaction.
+     */
+    @Query(value = """
+            SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)
+                || set_config('statement_timeout', :timeout, true)
+                || set_config('plan_cache_mode', 'force_custom_plan', true)
+            """, nativeQuery = true)
+    String configureFuzzySearch(String threshold, String timeout);
+
+    /**
+     * Plans the rest of the current transaction's statements for their actual parameters. A
+     * prepared statement reused often enough gets a generic plan, which can't see that a
+     * {@code lower(name) LIKE} pattern is selective enough for the trigram index.
+     */
+    @Query(value = "SELECT set_config('plan_cache_mode', 'force_custom_plan', true)", nativeQuery = true)
+    String forceCustomPlans();
 }
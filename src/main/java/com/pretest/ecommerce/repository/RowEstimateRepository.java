@@ -0,0 +1,33 @@
+package com.pretest.ecommerce.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Row counts as PostgreSQL's planner estimates them from table statistics, without running the
+ * query. Runs on the current transaction's connection, so its settings apply.
+ */
+@Repository
+public class RowEstimateRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * How many rows the native query {@code sql} would return, by the planner's estimate.
+     */
+    public long estimate(String sql, Object... args) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable plan for " + sql, e);
+        }
+    }
+}
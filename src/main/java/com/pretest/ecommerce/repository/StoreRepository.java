@@ -3,6 +3,7 @@ package com.pretest.ecommerce.repository;
 import com.pretest.ecommerce.entity.Store;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,4 +15,9 @@ import java.util.UUID;
 public interface StoreRepository extends JpaRepository<Store, Long> {
     boolean existsByUserId(UUID userId);
     Optional<Store> findByUserId(UUID userId);
+
+    /**
+     * A page of stores, fetched one row long instead of counted.
+     */
+    Slice<Store> findAllBy(Pageable pageable);
 }
@@ -0,0 +1,26 @@
+package com.pretest.ecommerce.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Claims of a verified token. Cheap to keep in memory, unlike the {@code User} entity.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class AuthPrincipal {
+    private final UUID userId;
+    private final String email;
+    private final String role;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    public boolean isExpired() {
+        return expiresAt != null && !expiresAt.isAfter(Instant.now());
+    }
+}
@@ -0,0 +1,48 @@
+package com.pretest.ecommerce.security;
+
+import com.pretest.ecommerce.service.AuthService;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * Resolves the bearer token once per request and keeps the result as a request attribute,
+ * so {@link CurrentUserArgumentResolver} doesn't verify it again. Runs after
+ * {@link RateLimitFilter}, so only requests within their limit pay for verification.
+ * Requests without a valid token pass through, endpoints that need a caller reject them.
+ */
+@Component
+public class AuthenticationFilter implements Filter {
+
+    public static final String PRINCIPAL_ATTRIBUTE = AuthenticationFilter.class.getName() + ".principal";
+
+    public static final String ERROR_ATTRIBUTE = AuthenticationFilter.class.getName() + ".error";
+
+    @Autowired
+    private AuthService authService;
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        String authHeader = request.getHeader("Authorization");
+
+        if (authHeader != null) {
+            try {
+                request.setAttribute(PRINCIPAL_ATTRIBUTE, authService.authenticate(authHeader));
+            } catch (ResponseStatusException e) {
+                request.setAttribute(ERROR_ATTRIBUTE, e);
+            }
+        }
+
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+
+    public static AuthPrincipal getPrincipal(ServletRequest request) {
+        return (AuthPrincipal) request.getAttribute(PRINCIPAL_ATTRIBUTE);
+    }
+}
@@ -53,6 +53,9 @@ public class Bcrypt {
 
     private static final int BCRYPT_SALT_LEN = 16;
 
+    // Shared across calls: SecureRandom is thread-safe and seeding a new one per salt is costly
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     // Blowfish parameters
     private static final int BLOWFISH_NUM_ROUNDS = 16;
 
@@ -701,7 +704,7 @@ public class Bcrypt {
      * @exception IllegalArgumentException if prefix or log_rounds is invalid
      */
     public static String gensalt(String prefix, int log_rounds) throws IllegalArgumentException {
-        return gensalt(prefix, log_rounds, new SecureRandom());
+        return gensalt(prefix, log_rounds, RANDOM);
     }
 
     /**
@@ -724,7 +727,7 @@ public class Bcrypt {
      * @exception IllegalArgumentException if log_rounds is invalid
      */
     public static String gensalt(int log_rounds) throws IllegalArgumentException {
-        return gensalt(log_rounds, new SecureRandom());
+        return gensalt(log_rounds, RANDOM);
     }
 
     public static String gensalt(String prefix) {
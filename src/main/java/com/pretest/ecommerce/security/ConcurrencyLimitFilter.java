@@ -0,0 +1,174 @@
+package com.pretest.ecommerce.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the requests this node works on at once and sheds the rest with 503, so a slow database
+ * turns into fast rejections instead of every Tomcat thread waiting on it.
+ * <p>
+ * The cap adapts to latency, gradient style: once per {@code window} the average response time
+ * of that window is compared with a slow-moving baseline. While they match the cap grows by
+ * a fraction of its square root, so it keeps probing for headroom; when responses slow down it
+ * shrinks in proportion right away, by at most half per window. The cap only grows while it is
+ * actually being used, so a quiet node doesn't drift to {@code max-limit}.
+ */
+@Component
+public class ConcurrencyLimitFilter implements Filter {
+
+    @Value("${noptzy.concurrency-limit.enabled}")
+    private Boolean enabled;
+
+    @Value("${noptzy.concurrency-limit.initial-limit}")
+    private Integer initialLimit;
+
+    @Value("${noptzy.concurrency-limit.min-limit}")
+    private Integer minLimit;
+
+    @Value("${noptzy.concurrency-limit.max-limit}")
+    private Integer maxLimit;
+
+    @Value("${noptzy.concurrency-limit.window}")
+    private Long window;
+
+    @Value("${noptzy.concurrency-limit.min-window-samples}")
+    private Integer minWindowSamples;
+
+    @Value("${noptzy.concurrency-limit.baseline-windows}")
+    private Integer baselineWindows;
+
+    @Value("${noptzy.concurrency-limit.tolerance}")
+    private Double tolerance;
+
+    @Value("${noptzy.concurrency-limit.smoothing}")
+    private Double smoothing;
+
+    @Value("${noptzy.concurrency-limit.retry-after}")
+    private Long retryAfter;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private final LongAdder windowLatency = new LongAdder();
+
+    private final LongAdder windowSamples = new LongAdder();
+
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile int limit;
+
+    private volatile long windowEnd;
+
+    private double estimatedLimit;
+
+    private double baselineLatency;
+
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        limit = initialLimit;
+        estimatedLimit = initialLimit;
+        windowEnd = System.nanoTime() + window * 1000000;
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("concurrency.limit", this, filter -> filter.limit).register(registry);
+            Gauge.builder("concurrency.in.flight", inFlight, AtomicInteger::get).register(registry);
+            rejected = Counter.builder("concurrency.rejected").register(registry);
+        });
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        if (!enabled) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        int current = inFlight.incrementAndGet();
+        if (current > limit) {
+            inFlight.decrementAndGet();
+            if (rejected != null) {
+                rejected.increment();
+            }
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+            response.setStatus(503);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.getWriter().write("Server busy");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            inFlight.decrementAndGet();
+            onSample(System.nanoTime() - start, current);
+        }
+    }
+
+    private void onSample(long latency, int inFlightAtStart) {
+        windowLatency.add(latency);
+        windowSamples.increment();
+        peakInFlight.accumulateAndGet(inFlightAtStart, Math::max);
+
+        long now = System.nanoTime();
+        if (now < windowEnd || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            long samples = windowSamples.sum();
+            if (now < windowEnd || samples < minWindowSamples) {
+                return;
+            }
+            double latencyAverage = (double) windowLatency.sumThenReset() / samples;
+            windowSamples.reset();
+            windowEnd = now + window * 1000000;
+            update(latencyAverage, peakInFlight.getAndSet(0));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void update(double latency, int peak) {
+        if (baselineLatency == 0) {
+            baselineLatency = latency;
+        } else {
+            baselineLatency += (latency - baselineLatency) / baselineWindows;
+            // after a long slow spell, let the baseline come back down quickly
+            if (baselineLatency > latency * 2) {
+                baselineLatency = latency * 2;
+            }
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineLatency / latency));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (peak < estimatedLimit / 2) {
+            target = Math.min(target, estimatedLimit);
+        }
+        // back off at once, grow gradually
+        if (target > estimatedLimit) {
+            target = estimatedLimit * (1 - smoothing) + target * smoothing;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, target));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,16 @@
+package com.pretest.ecommerce.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the caller resolved by {@link AuthenticationFilter}. Declare the parameter as
+ * {@link AuthPrincipal} when the token claims are enough, or as {@code User} when the handler
+ * needs the entity, which is then loaded for that handler only.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -0,0 +1,46 @@
+package com.pretest.ecommerce.security;
+
+import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Autowired
+    private AuthService authService;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        Class<?> type = parameter.getParameterType();
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (AuthPrincipal.class.equals(type) || User.class.equals(type));
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        AuthPrincipal principal = AuthenticationFilter.getPrincipal(request);
+
+        if (principal == null) {
+            ResponseStatusException error = (ResponseStatusException) request
+                    .getAttribute(AuthenticationFilter.ERROR_ATTRIBUTE);
+            throw error != null ? error : new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+
+        if (User.class.equals(parameter.getParameterType())) {
+            return authService.loadUser(principal);
+        }
+        return principal;
+    }
+}
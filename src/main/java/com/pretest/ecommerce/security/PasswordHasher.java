@@ -0,0 +1,155 @@
+package com.pretest.ecommerce.security;
+
+import com.pretest.ecommerce.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs bcrypt on its own pool, one thread per core by default, so a login burst can only
+ * occupy that many cores instead of every request thread. The queue is bounded and a full
+ * queue fails fast with {@link ServiceBusyException} rather than piling up waiting requests.
+ * <p>
+ * New hashes use {@code noptzy.password.hasher.cost}, raised at startup to the highest cost
+ * that still hashes within {@code target-latency} ms on this machine when that is set.
+ */
+@Slf4j
+@Component
+public class PasswordHasher {
+
+    private static final int MIN_COST = 4;
+
+    private static final int MAX_COST = 16;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${noptzy.password.hasher.threads}")
+    private Integer threads;
+
+    @Value("${noptzy.password.hasher.queue-capacity}")
+    private Integer queueCapacity;
+
+    @Value("${noptzy.password.hasher.retry-after}")
+    private Long retryAfter;
+
+    @Value("${noptzy.password.hasher.cost}")
+    private Integer minCost;
+
+    @Value("${noptzy.password.hasher.target-latency}")
+    private Long targetLatency;
+
+    private int cost;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer hashTimer;
+
+    private Timer checkTimer;
+
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hasher-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hasher.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hasher.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        hashTimer = Timer.builder("password.hasher.duration").tag("operation", "hash").register(meterRegistry);
+        checkTimer = Timer.builder("password.hasher.duration").tag("operation", "check").register(meterRegistry);
+        rejected = Counter.builder("password.hasher.rejected").register(meterRegistry);
+
+        cost = targetLatency > 0 ? Math.max(minCost, calibrate(targetLatency)) : minCost;
+        Gauge.builder("password.hasher.cost", () -> cost).register(meterRegistry);
+        log.info("Hashing passwords at bcrypt cost {}", cost);
+    }
+
+    /**
+     * Highest cost whose hash takes at most {@code targetMillis} here. Each step doubles the
+     * work, so this stops as soon as one step overshoots.
+     */
+    static int calibrate(long targetMillis) {
+        int best = MIN_COST;
+        for (int c = MIN_COST; c <= MAX_COST; c++) {
+            String salt = Bcrypt.gensalt(c);
+            long elapsed = Long.MAX_VALUE;
+            for (int run = 0; run < 2; run++) {
+                long start = System.nanoTime();
+                Bcrypt.hashpw("calibration", salt);
+                elapsed = Math.min(elapsed, System.nanoTime() - start);
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(elapsed) > targetMillis) {
+                break;
+            }
+            best = c;
+        }
+        return best;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public String hash(String password) {
+        return submit(hashTimer, () -> Bcrypt.hashpw(password, Bcrypt.gensalt(cost)));
+    }
+
+    /**
+     * True when {@code hashed} was made with a lower cost than new hashes get. Never true for a
+     * higher cost, so nodes calibrated to different costs don't keep rewriting each other's hashes.
+     */
+    public boolean needsRehash(String hashed) {
+        try {
+            return Integer.parseInt(hashed.substring(4, 6)) < cost;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    public boolean check(String password, String hashed) {
+        return submit(checkTimer, () -> Bcrypt.checkpw(password, hashed));
+    }
+
+    private <T> T submit(Timer timer, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Server is busy, please try again later", retryAfter);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
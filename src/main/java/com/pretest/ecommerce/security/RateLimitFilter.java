@@ -1,28 +1,148 @@
 package com.pretest.ecommerce.security;
 
-import com.pretest.ecommerce.service.AuthService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.io.File;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Per-caller token buckets, one per caller and {@link RateLimitPolicies policy}, so expensive
+ * routes get their own, smaller budget without cutting into cheap reads.
+ * <p>
+ * Buckets live in a bounded cache: a bucket idle for longer than
+ * {@code noptzy.rate-limit.idle-ttl} has refilled anyway and is dropped, and past
+ * {@code max-buckets} the least valuable ones are evicted, so rotating keys can't grow the heap.
+ * <p>
+ * With {@code noptzy.rate-limit.mode=redis} the limit is enforced across all nodes by
+ * {@link RedisRateLimiter}, and the local buckets only take over while Redis is unreachable.
+ * <p>
+ * The filter runs before {@link AuthenticationFilter}, so a request it rejects never reaches
+ * Redis or the database. A caller with a well-signed, unexpired token is keyed by its user id,
+ * found in the node's {@link TokenCache} or else by checking the signature; that needs no Redis,
+ * and gives every node the same key for the caller. Any other token is keyed by IP, so a made-up
+ * user id can neither dodge the limit nor drain someone else's bucket.
+ * <p>
+ * Every response carries the caller's {@code RateLimit-Limit}, {@code -Remaining}, {@code -Reset}
+ * and {@code -Policy} for the policy it was charged to, and a 429 also carries {@code Retry-After}:
+ * the seconds until the bucket holds enough tokens for that request. Decisions are counted in
+ * {@code rate.limit.requests}, tagged by policy and result.
+ * <p>
+ * Policies come from the application properties, or from {@code noptzy.rate-limit.policy-file}
+ * when that file exists. The file is re-read when it changes, so limits can be tuned without a
+ * restart; a file that doesn't parse is logged and the current policies are kept.
+ */
+@Slf4j
 @Component
 public class RateLimitFilter implements Filter {
 
+    @Value("${noptzy.rate-limit.mode}")
+    private String mode;
+
+    @Value("${noptzy.rate-limit.max-buckets}")
+    private Long maxBuckets;
+
+    @Value("${noptzy.rate-limit.idle-ttl}")
+    private Long idleTtl;
+
+    @Value("${noptzy.rate-limit.policy-file}")
+    private String policyFile;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    private ObjectProvider<RedisRateLimiter> redisRateLimiter;
+
+    @Autowired
+    private ObjectProvider<TokenCache> tokenCache;
+
     @Autowired
-    private AuthService authService;
+    private ObjectProvider<TokenVerifier> tokenVerifier;
+
+    private RedisRateLimiter sharedBuckets;
+
+    private TokenCache verifiedTokens;
+
+    private TokenVerifier signatures;
+
+    private Cache<String, PolicyBucket> buckets;
+
+    private volatile RateLimitPolicies policies;
 
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private MeterRegistry registry;
+
+    private long policyFileModified;
+
+    @PostConstruct
+    void init() {
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofMillis(idleTtl))
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(meters -> CaffeineCacheMetrics.monitor(meters, buckets, "rate-limit-buckets"));
+        sharedBuckets = "redis".equals(mode) ? redisRateLimiter.getIfAvailable() : null;
+        verifiedTokens = tokenCache.getIfAvailable();
+        signatures = tokenVerifier.getIfAvailable();
+        registry = meterRegistry.getIfAvailable();
+        policies = RateLimitPolicies.bind(Binder.get(environment));
+        reloadPolicies();
+    }
+
+    /**
+     * Swaps in the policy file when it changed since the last check. Buckets of a policy whose
+     * limits changed are rebuilt on their next use.
+     */
+    @Scheduled(fixedDelayString = "${noptzy.rate-limit.policy-reload-interval}")
+    public synchronized void reloadPolicies() {
+        File file = new File(policyFile);
+        long modified = policyFile.isBlank() ? 0 : file.lastModified();
+        if (modified == policyFileModified) {
+            return;
+        }
+        policyFileModified = modified;
+        try {
+            policies = modified == 0
+                    ? RateLimitPolicies.bind(Binder.get(environment))
+                    : RateLimitPolicies.bind(new Binder(new MapConfigurationPropertySource(
+                            PropertiesLoaderUtils.loadProperties(new FileSystemResource(file)))));
+            log.info("Loaded rate limit policies from {}", modified == 0 ? "application properties" : file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Keeping current rate limit policies, {} is invalid: {}", file, e.getMessage());
+        }
+    }
 
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
@@ -30,36 +150,83 @@ public class RateLimitFilter implements Filter {
         HttpServletRequest request = (HttpServletRequest) servletRequest;
         HttpServletResponse response = (HttpServletResponse) servletResponse;
 
-        String key = resolveKey(request);
-        Bucket bucket = buckets.computeIfAbsent(key, this::createNewBucket);
+        RateLimitPolicies.Charge charge = policies.resolve(request);
+        String key = charge.policy().name() + ":" + resolveKey(request);
+
+        ConsumptionProbe probe = tryConsume(key, charge);
+        RateLimitPolicies.Policy policy = charge.policy();
+        response.setHeader("RateLimit-Limit", String.valueOf(policy.capacity()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(probe.getRemainingTokens()));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(probe.getNanosToWaitForReset())));
+        response.setHeader("RateLimit-Policy", policy.capacity() + ";w=" + toSeconds(policy.period() * 1000000));
+        count(policy.name(), probe.isConsumed() ? "allowed" : "rejected");
 
-        if (bucket.tryConsume(1)) {
+        if (probe.isConsumed()) {
             filterChain.doFilter(servletRequest, servletResponse);
         } else {
             response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(Math.max(1, toSeconds(probe.getNanosToWaitForRefill()))));
             response.getWriter().write("Too many requests");
         }
     }
 
+    private ConsumptionProbe tryConsume(String key, RateLimitPolicies.Charge charge) {
+        RateLimitPolicies.Policy policy = charge.policy();
+        if (sharedBuckets != null) {
+            ConsumptionProbe probe = sharedBuckets
+                    .tryConsume(key, policy.capacity(), Duration.ofMillis(policy.period()), charge.tokens());
+            if (probe != null) {
+                return probe;
+            }
+        }
+
+        PolicyBucket bucket = buckets.get(key, ignored -> createNewBucket(policy));
+        if (!bucket.policy().equals(policy)) {
+            bucket = buckets.asMap().compute(key, (ignored, current) ->
+                    current != null && current.policy().equals(policy) ? current : createNewBucket(policy));
+        }
+        return bucket.bucket().tryConsumeAndReturnRemaining(charge.tokens());
+    }
+
+    private void count(String policy, String result) {
+        if (registry != null) {
+            counters.computeIfAbsent(policy + ":" + result, ignored -> Counter.builder("rate.limit.requests")
+                    .tag("policy", policy)
+                    .tag("result", result)
+                    .register(registry)).increment();
+        }
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + 999999999) / 1000000000;
+    }
+
     private String resolveKey(HttpServletRequest request) {
         String authHeader = request.getHeader("Authorization");
-
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            try {
-                UUID userId = authService.extractUserIdFromToken(authHeader);
-                return "user:" + userId.toString();
-            } catch (Exception e) {
-                // Invalid token, fall back to IP
+            String token = authHeader.substring(7);
+            AuthPrincipal principal = verifiedTokens == null ? null : verifiedTokens.get(TokenDigest.of(token));
+            if (principal != null) {
+                return "user:" + principal.getUserId().toString();
+            }
+            String userId = signatures == null ? null : signatures.userId(token);
+            if (userId != null) {
+                return "user:" + userId;
             }
         }
 
         return "ip:" + request.getRemoteAddr();
     }
 
-    private Bucket createNewBucket(String key) {
-        Bandwidth limit = Bandwidth.classic(100, Refill.greedy(100, Duration.ofMinutes(1)));
-        return Bucket.builder()
+    private PolicyBucket createNewBucket(RateLimitPolicies.Policy policy) {
+        Bandwidth limit = Bandwidth.classic(policy.capacity(),
+                Refill.greedy(policy.capacity(), Duration.ofMillis(policy.period())));
+        return new PolicyBucket(policy, Bucket.builder()
                 .addLimit(limit)
-                .build();
+                .build());
+    }
+
+    private record PolicyBucket(RateLimitPolicies.Policy policy, Bucket bucket) {
     }
 }
@@ -0,0 +1,143 @@
+package com.pretest.ecommerce.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.Data;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rate-limit policies bound from {@code noptzy.rate-limit.policies.<name>.*}. Each policy has its
+ * own bucket per caller ({@code capacity} tokens refilled every {@code period} ms) and a list of
+ * routes, written {@code [METHOD ]pattern[=cost]}, e.g. {@code POST /api/transactions/checkout=5}.
+ * A route without a cost takes the policy's {@code cost} (default 1).
+ * <p>
+ * A request is charged to the most specific matching route; a method-qualified route wins over
+ * an unqualified one with the same pattern. Requests no route matches fall to the {@code default}
+ * policy, or to 100 per minute when none is configured.
+ */
+public class RateLimitPolicies {
+
+    public static final String PROPERTY_PREFIX = "noptzy.rate-limit.policies";
+
+    public static final String DEFAULT_POLICY = "default";
+
+    private static final Policy FALLBACK = new Policy(DEFAULT_POLICY, 100, 60000);
+
+    private static final Comparator<Route> SPECIFICITY = Comparator
+            .comparing(Route::pattern, PathPattern.SPECIFICITY_COMPARATOR)
+            .thenComparing(route -> route.method() == null);
+
+    private final Policy defaultPolicy;
+
+    private final List<Route> routes;
+
+    private RateLimitPolicies(Policy defaultPolicy, List<Route> routes) {
+        this.defaultPolicy = defaultPolicy;
+        this.routes = routes;
+    }
+
+    /**
+     * Reads the policies from {@code binder}. Throws {@link IllegalArgumentException} on an
+     * invalid policy, so a broken reload can be rejected as a whole.
+     */
+    public static RateLimitPolicies bind(Binder binder) {
+        Map<String, PolicyProperties> properties = binder
+                .bind(PROPERTY_PREFIX, Bindable.mapOf(String.class, PolicyProperties.class))
+                .orElse(Map.of());
+
+        Policy defaultPolicy = FALLBACK;
+        List<Route> routes = new ArrayList<>();
+        PathPatternParser parser = new PathPatternParser();
+        for (Map.Entry<String, PolicyProperties> entry : properties.entrySet()) {
+            String name = entry.getKey();
+            PolicyProperties policyProperties = entry.getValue();
+            if (policyProperties.getCapacity() <= 0 || policyProperties.getPeriod() <= 0) {
+                throw new IllegalArgumentException("Rate limit policy " + name + " needs a positive capacity and period");
+            }
+            if (policyProperties.getCapacity() / policyProperties.getPeriod() >= 1000000) {
+                throw new IllegalArgumentException("Rate limit policy " + name + " refills faster than one token per ns");
+            }
+            Policy policy = new Policy(name, policyProperties.getCapacity(), policyProperties.getPeriod());
+            if (DEFAULT_POLICY.equals(name)) {
+                defaultPolicy = policy;
+            }
+
+            for (String spec : policyProperties.getRoutes()) {
+                String route = spec.trim();
+                long cost = policyProperties.getCost();
+                int weight = route.lastIndexOf('=');
+                if (weight > 0) {
+                    try {
+                        cost = Long.parseLong(route.substring(weight + 1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Rate limit route " + spec + " has a cost that isn't a number");
+                    }
+                    route = route.substring(0, weight).trim();
+                }
+                if (cost <= 0) {
+                    throw new IllegalArgumentException("Rate limit route " + spec + " needs a positive cost");
+                }
+                if (cost > policy.capacity()) {
+                    throw new IllegalArgumentException("Rate limit route " + spec + " costs more than its capacity");
+                }
+
+                String method = null;
+                int space = route.indexOf(' ');
+                if (space > 0) {
+                    method = route.substring(0, space).toUpperCase();
+                    route = route.substring(space + 1).trim();
+                }
+                routes.add(new Route(method, parser.parse(route), policy, cost));
+            }
+        }
+        routes.sort(SPECIFICITY);
+        return new RateLimitPolicies(defaultPolicy, List.copyOf(routes));
+    }
+
+    public Charge resolve(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(
+                request.getRequestURI().substring(request.getContextPath().length()));
+        for (Route route : routes) {
+            if ((route.method() == null || route.method().equals(request.getMethod()))
+                    && route.pattern().matches(path)) {
+                return new Charge(route.policy(), route.cost());
+            }
+        }
+        return new Charge(defaultPolicy, 1);
+    }
+
+    /**
+     * One bucket per caller: {@code capacity} tokens, refilled over {@code period} ms.
+     */
+    public record Policy(String name, long capacity, long period) {
+    }
+
+    /**
+     * What a request costs, and from which policy's bucket.
+     */
+    public record Charge(Policy policy, long tokens) {
+    }
+
+    private record Route(String method, PathPattern pattern, Policy policy, long cost) {
+    }
+
+    @Data
+    public static class PolicyProperties {
+
+        private List<String> routes = new ArrayList<>();
+
+        private long capacity;
+
+        private long period;
+
+        private long cost = 1;
+    }
+}
@@ -0,0 +1,175 @@
+package com.pretest.ecommerce.security;
+
+import io.github.bucket4j.ConsumptionProbe;
+import io.lettuce.core.ClientOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets shared by every node, stored in Redis as {@code rate_limit:<key>} hashes. Refill
+ * and consume happen in one script using the Redis clock, so nodes with skewed clocks still
+ * agree. A bucket expires once it would be full again.
+ * <p>
+ * When Redis fails the caller is told to decide locally, and Redis is left alone for
+ * {@code noptzy.rate-limit.redis-retry-interval} so a dead server doesn't add a connect timeout
+ * to every request. The limiter connects to the app's Redis (standalone, sentinel or cluster) on
+ * a connection of its own that rejects commands while it is down instead of queueing them until
+ * the command timeout, so the fallback is immediate without changing how the rest of the app's
+ * Redis calls fail. Only created with {@code noptzy.rate-limit.mode=redis}.
+ */
+@Component
+@ConditionalOnProperty(name = "noptzy.rate-limit.mode", havingValue = "redis")
+public class RedisRateLimiter {
+
+    private static final String KEY_PREFIX = "rate_limit:";
+
+    // KEYS: bucket. ARGV: capacity, refill period ms, tokens requested.
+    // Returns consumed (1/0), tokens left, ms until the request would fit, ms until full
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CONSUME_SCRIPT = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local period = tonumber(ARGV[2])
+            local requested = tonumber(ARGV[3])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+            local tokens = tonumber(bucket[1])
+            local ts = tonumber(bucket[2])
+            if tokens == nil then
+                tokens = capacity
+                ts = now
+            end
+            tokens = math.min(capacity, tokens + math.max(0, now - ts) * capacity / period)
+
+            local allowed = 0
+            local wait = 0
+            if tokens >= requested then
+                tokens = tokens - requested
+                allowed = 1
+            else
+                wait = math.ceil((requested - tokens) * period / capacity)
+            end
+            local reset = math.ceil((capacity - tokens) * period / capacity)
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+            redis.call('PEXPIRE', KEYS[1], reset + 1000)
+            return {allowed, math.floor(tokens), wait, reset}
+            """, List.class);
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${noptzy.rate-limit.redis-retry-interval}")
+    private Long retryInterval;
+
+    private volatile long unavailableUntil;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    @PostConstruct
+    void init() {
+        if (redisConnectionFactory instanceof LettuceConnectionFactory lettuce) {
+            connectionFactory = new LettuceConnectionFactory(server(lettuce), rejectingWhileDisconnected(
+                    lettuce.getClientConfiguration()));
+            connectionFactory.afterPropertiesSet();
+            redisTemplate = new StringRedisTemplate(connectionFactory);
+        } else {
+            redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        }
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static RedisConfiguration server(LettuceConnectionFactory lettuce) {
+        if (lettuce.isClusterAware()) {
+            return lettuce.getClusterConfiguration();
+        }
+        if (lettuce.isRedisSentinelAware()) {
+            return lettuce.getSentinelConfiguration();
+        }
+        return lettuce.getStandaloneConfiguration();
+    }
+
+    /**
+     * The app's client configuration, unpooled and with {@code REJECT_COMMANDS} while disconnected.
+     */
+    private static LettuceClientConfiguration rejectingWhileDisconnected(LettuceClientConfiguration app) {
+        ClientOptions options = app.getClientOptions().orElseGet(ClientOptions::create).mutate()
+                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                .build();
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder client = LettuceClientConfiguration.builder()
+                .clientOptions(options)
+                .commandTimeout(app.getCommandTimeout())
+                .shutdownTimeout(app.getShutdownTimeout())
+                .shutdownQuietPeriod(app.getShutdownQuietPeriod());
+        app.getClientResources().ifPresent(client::clientResources);
+        app.getClientName().ifPresent(client::clientName);
+        app.getReadFrom().ifPresent(client::readFrom);
+        app.getRedisCredentialsProviderFactory().ifPresent(client::redisCredentialsProviderFactory);
+        if (app.isUseSsl()) {
+            LettuceClientConfiguration.LettuceSslClientConfigurationBuilder ssl = client.useSsl();
+            if (!app.isVerifyPeer()) {
+                ssl.disablePeerVerification();
+            }
+            if (app.isStartTls()) {
+                ssl.startTls();
+            }
+        }
+        return client.build();
+    }
+
+    /**
+     * Takes {@code tokens} from the shared bucket, reporting the bucket's state the way a local
+     * bucket4j bucket would. Returns null when Redis can't answer and the caller should fall back
+     * to its local bucket.
+     */
+    public ConsumptionProbe tryConsume(String key, long capacity, Duration period, long tokens) {
+        if (System.currentTimeMillis() < unavailableUntil) {
+            return null;
+        }
+        try {
+            List<?> result = redisTemplate.execute(CONSUME_SCRIPT, List.of(KEY_PREFIX + key),
+                    String.valueOf(capacity), String.valueOf(period.toMillis()), String.valueOf(tokens));
+            if (result == null || result.size() < 4) {
+                return null;
+            }
+            long remaining = (Long) result.get(1);
+            long nanosToReset = TimeUnit.MILLISECONDS.toNanos((Long) result.get(3));
+            return Long.valueOf(1).equals(result.get(0))
+                    ? ConsumptionProbe.consumed(remaining, nanosToReset)
+                    : ConsumptionProbe.rejected(remaining, TimeUnit.MILLISECONDS.toNanos((Long) result.get(2)), nanosToReset);
+        } catch (DataAccessException e) {
+            unavailableUntil = System.currentTimeMillis() + retryInterval;
+            meterRegistry.ifAvailable(registry -> registry.counter("rate.limit.redis.failures").increment());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pretest.ecommerce.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Node-local cache of verified tokens, keyed by {@link TokenDigest}. An entry lives until the
+ * token expires or the configured TTL passes, whichever comes first. Revocations are broadcast
+ * on {@link #INVALIDATION_CHANNEL} so every node drops the entry, the TTL only bounds how long
+ * a lost message can keep a revoked token alive.
+ */
+@Component
+public class TokenCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "jwt_token:invalidated";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${noptzy.jwt.cache.max-size}")
+    private Long maxSize;
+
+    @Value("${noptzy.jwt.cache.ttl}")
+    private Long ttl;
+
+    private Cache<String, AuthPrincipal> cache;
+
+    @PostConstruct
+    void init() {
+        long ttlNanos = Duration.ofMillis(ttl).toNanos();
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, AuthPrincipal>() {
+                    @Override
+                    public long expireAfterCreate(String key, AuthPrincipal principal, long currentTime) {
+                        long untilExpiry = Duration.between(Instant.now(), principal.getExpiresAt()).toNanos();
+                        return Math.max(0, Math.min(ttlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, AuthPrincipal principal, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, principal, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, AuthPrincipal principal, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public AuthPrincipal get(String digest) {
+        AuthPrincipal principal = cache.getIfPresent(digest);
+        if (principal != null && principal.isExpired()) {
+            cache.invalidate(digest);
+            return null;
+        }
+        return principal;
+    }
+
+    public void put(String digest, AuthPrincipal principal) {
+        cache.put(digest, principal);
+    }
+
+    public void invalidate(String digest) {
+        cache.invalidate(digest);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, digest);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
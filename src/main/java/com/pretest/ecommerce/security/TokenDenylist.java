@@ -0,0 +1,169 @@
+package com.pretest.ecommerce.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Revoked token digests, for the stateless access-token mode. Redis holds the authoritative
+ * list in {@code jwt_revoked} (digest scored by token expiry); every node keeps a Bloom filter
+ * of it, fed by {@link #REVOCATION_CHANNEL} and rebuilt from the sorted set on a schedule,
+ * which also drops expired entries and repairs missed messages.
+ * <p>
+ * {@link #mightBeRevoked} never misses a revoked token once its message or a rebuild has
+ * arrived (at once on the node that revoked it), and a false positive only costs the caller a
+ * Redis lookup.
+ */
+@Component
+public class TokenDenylist implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "jwt_token:revoked";
+
+    private static final String REVOKED_KEY = "jwt_revoked";
+
+    // KEYS: revoked set. ARGV: now ms, channel, then digest/expiry pairs
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+            for i = 3, #ARGV, 2 do
+                redis.call('ZADD', KEYS[1], ARGV[i + 1], ARGV[i])
+                redis.call('PUBLISH', ARGV[2], ARGV[i])
+            end
+            return 1
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${noptzy.jwt.denylist.expected-insertions}")
+    private Integer expectedInsertions;
+
+    @Value("${noptzy.jwt.denylist.false-positive-rate}")
+    private Double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+
+    private volatile BloomFilter next;
+
+    /**
+     * Records revocations cluster-wide. Entries stay until the token would have expired anyway.
+     */
+    public void revoke(Map<String, Long> expiryByDigest) {
+        if (expiryByDigest.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>(expiryByDigest.size() * 2 + 2);
+        args.add(String.valueOf(System.currentTimeMillis()));
+        args.add(REVOCATION_CHANNEL);
+        expiryByDigest.forEach((digest, expiresAt) -> {
+            args.add(digest);
+            args.add(String.valueOf(expiresAt));
+        });
+        redisTemplate.execute(REVOKE_SCRIPT, List.of(REVOKED_KEY), args.toArray());
+        // this node's own requests mustn't wait for the message to come back
+        expiryByDigest.keySet().forEach(this::add);
+    }
+
+    /**
+     * False when the token is certainly not revoked. True when it may be, including before the
+     * first load finished.
+     */
+    public boolean mightBeRevoked(String digest) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(digest);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void add(String digest) {
+        BloomFilter current = filter;
+        BloomFilter pending = next;
+        if (current != null) {
+            current.put(digest);
+        }
+        if (pending != null) {
+            pending.put(digest);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${noptzy.jwt.denylist.rebuild-interval}")
+    public synchronized void rebuild() {
+        // messages arriving while the set is read go into both filters
+        next = new BloomFilter(expectedInsertions, falsePositiveRate);
+        try {
+            Set<String> revoked = redisTemplate.opsForZSet()
+                    .rangeByScore(REVOKED_KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            if (revoked != null) {
+                revoked.forEach(next::put);
+            }
+            filter = next;
+        } finally {
+            next = null;
+        }
+    }
+
+    /**
+     * Lock-free Bloom filter over token digests. The digest is already a SHA-256, so its first
+     * two longs serve as the two base hashes.
+     */
+    static class BloomFilter {
+
+        private final AtomicLongArray bits;
+
+        private final long bitCount;
+
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = new AtomicLongArray((int) ((m + 63) / 64));
+            bitCount = bits.length() * 64L;
+            hashCount = Math.max(1, (int) Math.round((double) m / expectedInsertions * Math.log(2)));
+        }
+
+        void put(String digest) {
+            ByteBuffer hash = ByteBuffer.wrap(Base64.getUrlDecoder().decode(digest));
+            long h1 = hash.getLong();
+            long h2 = hash.getLong();
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = bits.get(index);
+                } while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String digest) {
+            ByteBuffer hash = ByteBuffer.wrap(Base64.getUrlDecoder().decode(digest));
+            long h1 = hash.getLong();
+            long h2 = hash.getLong();
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.pretest.ecommerce.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis registry of issued tokens. Issuing and rotating a token pair are single Lua scripts,
+ * so each costs one round trip and rotation can't be raced by a replayed refresh token.
+ * <p>
+ * Tokens are keyed by their {@link TokenDigest} rather than the raw JWT. With
+ * {@code noptzy.jwt.legacy-keys} on, tokens issued before that change ({@code jwt_token:<jwt>})
+ * are still honoured and moved to their digest key, TTL included, the first time they are seen.
+ * <p>
+ * Each user also has a sorted set {@code user_sessions:<userId>} of their token digests scored
+ * by expiry, so revoking or listing a user's sessions costs O(their sessions).
+ * <p>
+ * A token's key holds {@code <userId>|<digest of the other token of its pair>}, so revoking
+ * either token of a pair, or rotating it away, ends the other one too. Keys written before
+ * pairs were recorded hold the user id alone.
+ */
+@Component
+public class TokenStore {
+
+    private static final String TOKEN_PREFIX = "jwt_digest:";
+
+    private static final String LEGACY_TOKEN_PREFIX = "jwt_token:";
+
+    private static final String SESSION_PREFIX = "user_sessions:";
+
+    private static final String ACCESS_MEMBER = "a:";
+
+    private static final String REFRESH_MEMBER = "r:";
+
+    private static final char PAIR_SEPARATOR = '|';
+
+    // KEYS: access token, refresh token, session index.
+    // ARGV: user id, access TTL ms, refresh TTL ms, now ms, access index member, refresh index member
+    private static final RedisScript<Long> ISSUE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('SET', KEYS[1], ARGV[1] .. '|' .. string.sub(ARGV[6], 3), 'PX', ARGV[2])
+            redis.call('SET', KEYS[2], ARGV[1] .. '|' .. string.sub(ARGV[5], 3), 'PX', ARGV[3])
+            local now = tonumber(ARGV[4])
+            redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', now)
+            redis.call('ZADD', KEYS[3], now + tonumber(ARGV[2]), ARGV[5], now + tonumber(ARGV[3]), ARGV[6])
+            redis.call('PEXPIRE', KEYS[3], ARGV[3])
+            return 1
+            """, Long.class);
+
+    // KEYS: old refresh token (its digest or legacy key, whichever held it), the same keys as
+    // ISSUE_SCRIPT, old access token (the old refresh key again when it had no pair).
+    // ARGV: same as ISSUE_SCRIPT, then the old refresh value as read, old refresh and old access
+    // index members. The old pair is only replaced if the value is still there, so a replayed
+    // refresh token loses the race. Returns the old tokens' remaining TTLs, or nothing.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ROTATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) ~= ARGV[7] then
+                return {}
+            end
+            local refreshTtl = redis.call('PTTL', KEYS[1])
+            local accessTtl = redis.call('PTTL', KEYS[5])
+            redis.call('DEL', KEYS[1], KEYS[5])
+            redis.call('ZREM', KEYS[4], ARGV[8], ARGV[9])
+            redis.call('SET', KEYS[2], ARGV[1] .. '|' .. string.sub(ARGV[6], 3), 'PX', ARGV[2])
+            redis.call('SET', KEYS[3], ARGV[1] .. '|' .. string.sub(ARGV[5], 3), 'PX', ARGV[3])
+            local now = tonumber(ARGV[4])
+            redis.call('ZREMRANGEBYSCORE', KEYS[4], '-inf', now)
+            redis.call('ZADD', KEYS[4], now + tonumber(ARGV[2]), ARGV[5], now + tonumber(ARGV[3]), ARGV[6])
+            redis.call('PEXPIRE', KEYS[4], ARGV[3])
+            return {refreshTtl, accessTtl}
+            """, List.class);
+
+    // KEYS: session index, the other token of the pair. ARGV: index members.
+    // Returns that token's remaining TTL, negative when it was gone already
+    private static final RedisScript<Long> REVOKE_PAIR_SCRIPT = new DefaultRedisScript<>("""
+            local ttl = redis.call('PTTL', KEYS[2])
+            redis.call('DEL', KEYS[2])
+            redis.call('ZREM', KEYS[1], unpack(ARGV))
+            return ttl
+            """, Long.class);
+
+    // KEYS: session index, then one token key per ARGV entry. ARGV: index members.
+    // Only the listed members are dropped, so a pair issued meanwhile stays indexed
+    private static final RedisScript<Long> REVOKE_ALL_SCRIPT = new DefaultRedisScript<>("""
+            for i, member in ipairs(ARGV) do
+                redis.call('DEL', KEYS[i + 1])
+                redis.call('ZREM', KEYS[1], member)
+            end
+            return #ARGV
+            """, Long.class);
+
+    // KEYS: digest key, legacy key. Moves the legacy entry over with its remaining TTL
+    private static final RedisScript<Long> EXISTS_LEGACY_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return 1
+            end
+            local ttl = redis.call('PTTL', KEYS[2])
+            if ttl <= 0 then
+                return 0
+            end
+            redis.call('SET', KEYS[1], redis.call('GET', KEYS[2]), 'PX', ttl)
+            redis.call('DEL', KEYS[2])
+            return 1
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${noptzy.jwt.legacy-keys}")
+    private Boolean legacyKeys;
+
+    public void issue(String userId, String accessToken, long accessTtl, String refreshToken, long refreshTtl) {
+        redisTemplate.execute(ISSUE_SCRIPT,
+                List.of(key(accessToken), key(refreshToken), SESSION_PREFIX + userId),
+                userId, String.valueOf(accessTtl), String.valueOf(refreshTtl),
+                String.valueOf(System.currentTimeMillis()), ACCESS_MEMBER + TokenDigest.of(accessToken),
+                REFRESH_MEMBER + TokenDigest.of(refreshToken));
+    }
+
+    /**
+     * Replaces {@code oldRefreshToken} and the access token issued with it by a new pair. Returns
+     * the digests of the replaced tokens with their expiry (epoch ms), or null, storing nothing,
+     * when the old token was already used or revoked.
+     */
+    public Map<String, Long> rotate(String oldRefreshToken, String userId, String accessToken, long accessTtl,
+            String refreshToken, long refreshTtl) {
+        String oldKey = key(oldRefreshToken);
+        String value = redisTemplate.opsForValue().get(oldKey);
+        if (value == null && legacyKeys) {
+            oldKey = LEGACY_TOKEN_PREFIX + oldRefreshToken;
+            value = redisTemplate.opsForValue().get(oldKey);
+        }
+        if (value == null) {
+            return null;
+        }
+        String oldDigest = TokenDigest.of(oldRefreshToken);
+        String oldAccessDigest = partner(value);
+
+        long now = System.currentTimeMillis();
+        List<?> ttls = redisTemplate.execute(ROTATE_SCRIPT,
+                List.of(oldKey, key(accessToken), key(refreshToken), SESSION_PREFIX + userId,
+                        oldAccessDigest == null ? oldKey : TOKEN_PREFIX + oldAccessDigest),
+                userId, String.valueOf(accessTtl), String.valueOf(refreshTtl), String.valueOf(now),
+                ACCESS_MEMBER + TokenDigest.of(accessToken), REFRESH_MEMBER + TokenDigest.of(refreshToken),
+                value, REFRESH_MEMBER + oldDigest, ACCESS_MEMBER + (oldAccessDigest == null ? oldDigest : oldAccessDigest));
+        if (ttls == null || ttls.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Long> replaced = new LinkedHashMap<>();
+        replaced.put(oldDigest, now + Math.max(0, ((Number) ttls.get(0)).longValue()));
+        long accessLeft = ((Number) ttls.get(1)).longValue();
+        if (oldAccessDigest != null && accessLeft > 0) {
+            replaced.put(oldAccessDigest, now + accessLeft);
+        }
+        return replaced;
+    }
+
+    public boolean exists(String token) {
+        if (!legacyKeys) {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(key(token)));
+        }
+        Long exists = redisTemplate.execute(EXISTS_LEGACY_SCRIPT,
+                List.of(key(token), LEGACY_TOKEN_PREFIX + token));
+        return Long.valueOf(1).equals(exists);
+    }
+
+    /**
+     * Deletes an access or refresh token and the other token of its pair, and drops both from
+     * their user's session index. Returns null if the token wasn't live.
+     */
+    public Revocation revoke(String token) {
+        String value = redisTemplate.opsForValue().getAndDelete(key(token));
+        if (value == null && legacyKeys) {
+            value = redisTemplate.opsForValue().getAndDelete(LEGACY_TOKEN_PREFIX + token);
+        }
+        if (value == null) {
+            return null;
+        }
+
+        String userId = userId(value);
+        String partner = partner(value);
+        // the key doesn't say which kind the token was, and a digest is only indexed as one
+        String digest = TokenDigest.of(token);
+        if (partner == null) {
+            redisTemplate.opsForZSet().remove(SESSION_PREFIX + userId, ACCESS_MEMBER + digest, REFRESH_MEMBER + digest);
+            return new Revocation(userId, Map.of());
+        }
+        long now = System.currentTimeMillis();
+        Long ttl = redisTemplate.execute(REVOKE_PAIR_SCRIPT, List.of(SESSION_PREFIX + userId, TOKEN_PREFIX + partner),
+                ACCESS_MEMBER + digest, REFRESH_MEMBER + digest, ACCESS_MEMBER + partner, REFRESH_MEMBER + partner);
+        return new Revocation(userId, ttl == null || ttl <= 0 ? Map.of() : Map.of(partner, now + ttl));
+    }
+
+    /**
+     * Deletes every indexed token of the user and returns their digests with their expiry (epoch
+     * ms). Reads only that user's index, never the keyspace. Tokens issued before the index
+     * existed aren't in it and live out their TTL.
+     */
+    public Map<String, Long> revokeAll(String userId) {
+        Set<ZSetOperations.TypedTuple<String>> entries = redisTemplate.opsForZSet()
+                .rangeWithScores(SESSION_PREFIX + userId, 0, -1);
+        if (entries == null || entries.isEmpty()) {
+            return Map.of();
+        }
+
+        List<String> keys = new ArrayList<>(entries.size() + 1);
+        List<String> members = new ArrayList<>(entries.size());
+        Map<String, Long> revoked = new LinkedHashMap<>();
+        keys.add(SESSION_PREFIX + userId);
+        for (ZSetOperations.TypedTuple<String> entry : entries) {
+            String digest = entry.getValue().substring(2);
+            keys.add(TOKEN_PREFIX + digest);
+            members.add(entry.getValue());
+            revoked.put(digest, entry.getScore() == null ? 0L : entry.getScore().longValue());
+        }
+        redisTemplate.execute(REVOKE_ALL_SCRIPT, keys, members.toArray());
+        return revoked;
+    }
+
+    /**
+     * Live refresh tokens of the user, one per login or device, as digest to expiry (epoch ms),
+     * soonest expiry first.
+     */
+    public Map<String, Long> sessions(String userId) {
+        Set<ZSetOperations.TypedTuple<String>> entries = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(SESSION_PREFIX + userId, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        Map<String, Long> sessions = new LinkedHashMap<>();
+        if (entries != null) {
+            for (ZSetOperations.TypedTuple<String> entry : entries) {
+                if (entry.getValue().startsWith(REFRESH_MEMBER) && entry.getScore() != null) {
+                    sessions.put(entry.getValue().substring(2), entry.getScore().longValue());
+                }
+            }
+        }
+        return sessions;
+    }
+
+    private static String key(String token) {
+        return TOKEN_PREFIX + TokenDigest.of(token);
+    }
+
+    private static String userId(String value) {
+        int separator = value.indexOf(PAIR_SEPARATOR);
+        return separator < 0 ? value : value.substring(0, separator);
+    }
+
+    private static String partner(String value) {
+        int separator = value.indexOf(PAIR_SEPARATOR);
+        return separator < 0 ? null : value.substring(separator + 1);
+    }
+
+    /**
+     * A revoked token's user, and the other token of its pair as digest to expiry (epoch ms) when
+     * it was still live.
+     */
+    public record Revocation(String userId, Map<String, Long> pair) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.pretest.ecommerce.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signs tokens and checks their signature and expiry with {@code noptzy.jwt.secret-key}. CPU
+ * only: whether a token was revoked is for {@link TokenStore} and {@link TokenDenylist}.
+ */
+@Component
+public class TokenVerifier {
+
+    @Value("${noptzy.jwt.secret-key}")
+    private String secretKey;
+
+    private Algorithm algorithm;
+
+    private JWTVerifier verifier;
+
+    @PostConstruct
+    void init() {
+        algorithm = Algorithm.HMAC256(secretKey);
+        verifier = JWT.require(algorithm).build();
+    }
+
+    public Algorithm algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * The decoded token. Throws {@link JWTVerificationException} when it's malformed, forged or
+     * expired.
+     */
+    public DecodedJWT verify(String token) {
+        return verifier.verify(token);
+    }
+
+    /**
+     * The {@code userId} claim of a token that is well signed and unexpired, else null.
+     */
+    public String userId(String token) {
+        try {
+            return verifier.verify(token).getClaim("userId").asString();
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+    }
+}
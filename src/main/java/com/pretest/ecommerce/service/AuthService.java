@@ -1,50 +1,81 @@
 package com.pretest.ecommerce.service;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.pretest.ecommerce.dto.LoginRequest;
 import com.pretest.ecommerce.dto.RegisterRequest;
+import com.pretest.ecommerce.dto.SessionResponse;
 import com.pretest.ecommerce.dto.TokenResponse;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.exception.ServiceBusyException;
 import com.pretest.ecommerce.repository.UserRepository;
-import com.pretest.ecommerce.security.Bcrypt;
+import com.pretest.ecommerce.security.AuthPrincipal;
+import com.pretest.ecommerce.security.PasswordHasher;
+import com.pretest.ecommerce.security.TokenCache;
+import com.pretest.ecommerce.security.TokenDenylist;
+import com.pretest.ecommerce.security.TokenDigest;
+import com.pretest.ecommerce.security.TokenStore;
+import com.pretest.ecommerce.security.TokenVerifier;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class AuthService {
 
+    /** Claim telling an access token from a refresh token; each is only accepted where it belongs. */
+    static final String TYPE_CLAIM = "typ";
+
+    static final String TYPE_ACCESS = "access";
+
+    static final String TYPE_REFRESH = "refresh";
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private ValidationService validationService;
 
-    @Autowired
-    private StringRedisTemplate redisTemplate;
-
-    @Value("${noptzy.jwt.secret-key}")
-    private String jwtSecretKey;
-
     @Value("${noptzy.jwt.access-token-expiration}")
     private Long accessTokenExpiration;
 
     @Value("${noptzy.jwt.refresh-token-expiration}")
     private Long refreshTokenExpiration;
 
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private TokenStore tokenStore;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private TokenVerifier tokenVerifier;
+
+    @Value("${noptzy.jwt.stateless}")
+    private Boolean stateless;
+
     @Transactional
     public User register(RegisterRequest request) {
         validationService.validate(request);
@@ -54,7 +85,7 @@ public class AuthService {
 
         User user = new User();
         user.setEmail(request.getEmail());
-        user.setPassword(Bcrypt.hashpw(request.getPassword(), Bcrypt.gensalt()));
+        user.setPassword(passwordHasher.hash(request.getPassword()));
         user.setName(request.getName());
         user.setRole("USER");
         user.setCreatedAt(LocalDateTime.now());
@@ -73,7 +104,7 @@ public class AuthService {
 
         User user = new User();
         user.setEmail(request.getEmail());
-        user.setPassword(Bcrypt.hashpw(request.getPassword(), Bcrypt.gensalt()));
+        user.setPassword(passwordHasher.hash(request.getPassword()));
         user.setName(request.getName());
         user.setRole("SELLER");
         user.setCreatedAt(LocalDateTime.now());
@@ -83,41 +114,41 @@ public class AuthService {
         return user;
     }
 
+    /**
+     * Moves a hash made at an older cost to the current one while the plaintext is at hand.
+     * Best effort: a busy hasher just leaves it for the next login.
+     */
+    private void rehashIfNeeded(User user, String password) {
+        if (!passwordHasher.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            user.setPassword(passwordHasher.hash(password));
+            user.setUpdatedAt(LocalDateTime.now());
+            userRepository.save(user);
+        } catch (ServiceBusyException ignored) {
+            // keep the old hash, it still verifies
+        }
+    }
+
     public TokenResponse login(LoginRequest request) {
         validationService.validate(request);
         User user = userRepository
                 .findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Email not found"));
 
-        if (!Bcrypt.checkpw(request.getPassword(), user.getPassword())) {
+        if (!passwordHasher.check(request.getPassword(), user.getPassword())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Email or password wrong");
         }
+        rehashIfNeeded(user, request.getPassword());
 
         long now = System.currentTimeMillis();
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecretKey);
-
-        String accessToken = JWT.create()
-                .withSubject(user.getEmail())
-                .withClaim("role", user.getRole())
-                .withClaim("userId", user.getId().toString())
-                .withIssuedAt(new Date(now))
-                .withExpiresAt(new Date(now + accessTokenExpiration))
-                .sign(algorithm);
-
-        String refreshToken = JWT.create()
-                .withSubject(user.getEmail())
-                .withClaim("role", user.getRole())
-                .withClaim("userId", user.getId().toString())
-                .withIssuedAt(new Date(now))
-                .withExpiresAt(new Date(now + refreshTokenExpiration))
-                .sign(algorithm);
+        String accessToken = sign(user, TYPE_ACCESS, now, accessTokenExpiration);
+        String refreshToken = sign(user, TYPE_REFRESH, now, refreshTokenExpiration);
 
-        redisTemplate.opsForValue().set("jwt_token:" + accessToken, user.getId().toString(),
-                Duration.ofMillis(accessTokenExpiration));
-        redisTemplate.opsForValue().set("jwt_token:" + refreshToken, user.getId().toString(),
-                Duration.ofMillis(refreshTokenExpiration));
-        redisTemplate.opsForValue().set("user_online:" + user.getId().toString(), "true",
-                Duration.ofMillis(refreshTokenExpiration));
+        tokenStore.issue(user.getId().toString(), accessToken, accessTokenExpiration, refreshToken,
+                refreshTokenExpiration);
+        presenceService.touch(user.getId());
 
         return TokenResponse.builder()
                 .accessToken(accessToken)
@@ -133,16 +164,13 @@ public class AuthService {
             token = token.substring(7);
         }
 
-        if (!redisTemplate.hasKey("jwt_token:" + token)) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or Expired Refresh Token");
-        }
-
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecretKey);
-        JWTVerifier verifier = JWT.require(algorithm).build();
         String userId;
 
         try {
-            DecodedJWT decodedJWT = verifier.verify(token);
+            DecodedJWT decodedJWT = tokenVerifier.verify(token);
+            if (!TYPE_REFRESH.equals(type(decodedJWT))) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid Refresh Token");
+            }
             userId = decodedJWT.getClaim("userId").asString();
         } catch (JWTVerificationException exception) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid Refresh Token");
@@ -151,32 +179,19 @@ public class AuthService {
         User user = userRepository.findById(UUID.fromString(userId))
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
 
-        redisTemplate.delete("jwt_token:" + token);
-
         long now = System.currentTimeMillis();
+        String newAccessToken = sign(user, TYPE_ACCESS, now, accessTokenExpiration);
+        String newRefreshToken = sign(user, TYPE_REFRESH, now, refreshTokenExpiration);
 
-        String newAccessToken = JWT.create()
-                .withSubject(user.getEmail())
-                .withClaim("role", user.getRole())
-                .withClaim("userId", user.getId().toString())
-                .withIssuedAt(new Date(now))
-                .withExpiresAt(new Date(now + accessTokenExpiration))
-                .sign(algorithm);
-
-        String newRefreshToken = JWT.create()
-                .withSubject(user.getEmail())
-                .withClaim("role", user.getRole())
-                .withClaim("userId", user.getId().toString())
-                .withIssuedAt(new Date(now))
-                .withExpiresAt(new Date(now + refreshTokenExpiration))
-                .sign(algorithm);
-
-        redisTemplate.opsForValue().set("jwt_token:" + newAccessToken, user.getId().toString(),
-                Duration.ofMillis(accessTokenExpiration));
-        redisTemplate.opsForValue().set("jwt_token:" + newRefreshToken, user.getId().toString(),
-                Duration.ofMillis(refreshTokenExpiration));
-        redisTemplate.opsForValue().set("user_online:" + user.getId().toString(), "true",
-                Duration.ofMillis(refreshTokenExpiration));
+        Map<String, Long> replaced = tokenStore.rotate(token, user.getId().toString(), newAccessToken,
+                accessTokenExpiration, newRefreshToken, refreshTokenExpiration);
+        if (replaced == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid or Expired Refresh Token");
+        }
+        // the old pair is gone from Redis, but stateless nodes only look there for denylisted tokens
+        replaced.keySet().forEach(tokenCache::invalidate);
+        tokenDenylist.revoke(replaced);
+        presenceService.touch(user.getId());
 
         return TokenResponse.builder()
                 .accessToken(newAccessToken)
@@ -188,63 +203,149 @@ public class AuthService {
         if (token != null && token.startsWith("Bearer ")) {
             token = token.substring(7);
         }
+        if (token == null || token.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
 
-        String redisKey = "jwt_token:" + token;
+        TokenStore.Revocation revocation = tokenStore.revoke(token);
 
-        if (redisTemplate.hasKey(redisKey)) {
-            String userId = redisTemplate.opsForValue().get(redisKey);
+        if (revocation != null) {
+            Map<String, Long> revoked = new HashMap<>(revocation.pair());
+            revoked.put(TokenDigest.of(token), JWT.decode(token).getExpiresAt().getTime());
+            revoked.keySet().forEach(tokenCache::invalidate);
+            tokenDenylist.revoke(revoked);
+            presenceService.clear(UUID.fromString(revocation.userId()));
+        }
+    }
 
-            redisTemplate.delete(redisKey);
+    /**
+     * Logs the user out everywhere, e.g. after a password reset or ban.
+     */
+    public int revokeAllSessions(UUID userId) {
+        Map<String, Long> revoked = tokenStore.revokeAll(userId.toString());
+        revoked.keySet().forEach(tokenCache::invalidate);
+        tokenDenylist.revoke(revoked);
+        presenceService.clear(userId);
+        return revoked.size();
+    }
 
-            if (userId != null) {
-                redisTemplate.delete("user_online:" + userId);
-            }
-        }
+    public List<SessionResponse> getSessions(UUID userId) {
+        return tokenStore.sessions(userId.toString()).entrySet().stream()
+                .map(session -> SessionResponse.builder()
+                        .id(session.getKey())
+                        .issuedAt(toLocalDateTime(session.getValue() - refreshTokenExpiration))
+                        .expiresAt(toLocalDateTime(session.getValue()))
+                        .build())
+                .toList();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    public User loadUser(AuthPrincipal principal) {
+        return userRepository.findById(principal.getUserId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
     }
 
-    public boolean isUserOnline(UUID userId) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey("user_online:" + userId.toString()));
+    /**
+     * Resolves the caller of a request and records them as seen.
+     */
+    public AuthPrincipal authenticate(String token) {
+        AuthPrincipal principal = resolvePrincipal(token);
+        presenceService.touch(principal.getUserId());
+        return principal;
     }
 
-    public User validateToken(String token) {
+    /**
+     * Verifies the bearer token against Redis and its signature, or answers from the local
+     * token cache when the same token was verified recently on this node. In stateless mode
+     * Redis is only asked when the local denylist can't rule out a revocation. Refresh tokens
+     * are refused: they are only good for {@link #refreshToken}.
+     */
+    private AuthPrincipal resolvePrincipal(String token) {
         if (token == null || !token.startsWith("Bearer ")) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
         }
 
         String jwtToken = token.substring(7);
+        String digest = TokenDigest.of(jwtToken);
 
-        if (!redisTemplate.hasKey("jwt_token:" + jwtToken)) {
+        AuthPrincipal cached = tokenCache.get(digest);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (stateless) {
+            AuthPrincipal principal = toPrincipal(verifyAccess(jwtToken));
+            if (tokenDenylist.mightBeRevoked(digest) && !tokenStore.exists(jwtToken)) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized or Token Expired");
+            }
+            tokenCache.put(digest, principal);
+            return principal;
+        }
+
+        if (!tokenStore.exists(jwtToken)) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized or Token Expired");
         }
 
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecretKey);
-        JWTVerifier verifier = JWT.require(algorithm).build();
+        AuthPrincipal principal = toPrincipal(verifyAccess(jwtToken));
+        tokenCache.put(digest, principal);
+        return principal;
+    }
 
+    private DecodedJWT verifyAccess(String jwtToken) {
+        DecodedJWT decodedJWT;
         try {
-            DecodedJWT decodedJWT = verifier.verify(jwtToken);
-            String userId = decodedJWT.getClaim("userId").asString();
-
-            return userRepository.findById(UUID.fromString(userId))
-                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+            decodedJWT = tokenVerifier.verify(jwtToken);
         } catch (JWTVerificationException exception) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
         }
+        if (!TYPE_ACCESS.equals(type(decodedJWT))) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+        }
+        return decodedJWT;
     }
 
-    public UUID extractUserIdFromToken(String token) {
-        if (token == null || !token.startsWith("Bearer ")) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
+    /**
+     * {@link #TYPE_ACCESS} or {@link #TYPE_REFRESH}. Tokens issued before they carried the claim
+     * are told apart by lifetime: only a refresh token outlives the access token expiration.
+     */
+    private String type(DecodedJWT decodedJWT) {
+        String type = decodedJWT.getClaim(TYPE_CLAIM).asString();
+        if (type != null) {
+            return type;
+        }
+        if (decodedJWT.getIssuedAt() == null || decodedJWT.getExpiresAt() == null) {
+            return null;
         }
+        long lifetime = decodedJWT.getExpiresAt().getTime() - decodedJWT.getIssuedAt().getTime();
+        return lifetime > accessTokenExpiration ? TYPE_REFRESH : TYPE_ACCESS;
+    }
 
-        String jwtToken = token.substring(7);
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecretKey);
-        JWTVerifier verifier = JWT.require(algorithm).build();
+    private String sign(User user, String type, long now, long expiration) {
+        return JWT.create()
+                .withSubject(user.getEmail())
+                .withClaim("role", user.getRole())
+                .withClaim("userId", user.getId().toString())
+                .withClaim(TYPE_CLAIM, type)
+                .withJWTId(UUID.randomUUID().toString())
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + expiration))
+                .sign(tokenVerifier.algorithm());
+    }
 
+    private AuthPrincipal toPrincipal(DecodedJWT decodedJWT) {
         try {
-            DecodedJWT decodedJWT = verifier.verify(jwtToken);
-            return UUID.fromString(decodedJWT.getClaim("userId").asString());
-        } catch (JWTVerificationException exception) {
+            return AuthPrincipal.builder()
+                    .userId(UUID.fromString(decodedJWT.getClaim("userId").asString()))
+                    .email(decodedJWT.getSubject())
+                    .role(decodedJWT.getClaim("role").asString())
+                    .issuedAt(decodedJWT.getIssuedAtAsInstant())
+                    .expiresAt(decodedJWT.getExpiresAtAsInstant())
+                    .build();
+        } catch (IllegalArgumentException | NullPointerException exception) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.pretest.ecommerce.service;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.function.LongSupplier;
+
+/**
+ * How a paged listing finds its total, chosen per request with the {@code count} parameter. The
+ * page itself is always fetched one row long, so whether another page follows is known without
+ * counting.
+ */
+public enum CountMode {
+
+    /** No total, only whether another page follows. */
+    NONE,
+    /** An exact {@code COUNT(*)}. */
+    EXACT,
+    /** The query planner's row estimate, which costs no more than planning the query. */
+    ESTIMATE;
+
+    /**
+     * The mode named by the {@code count} request parameter: {@code none}, {@code exact} or
+     * {@code estimate}; null means exact.
+     */
+    public static CountMode of(String name) {
+        if (name == null || name.isEmpty()) {
+            return EXACT;
+        }
+        return switch (name) {
+            case "none" -> NONE;
+            case "exact" -> EXACT;
+            case "estimate" -> ESTIMATE;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown count");
+        };
+    }
+
+    /**
+     * {@code slice} with its total in this mode. A page that already has one keeps it, and so does
+     * the last page, whose total follows from its offset; otherwise the total comes from
+     * {@code exact} or {@code estimate}. An estimate is raised to cover the rows known to exist.
+     */
+    public <T> Slice<T> total(Slice<T> slice, LongSupplier exact, LongSupplier estimate) {
+        if (this == NONE) {
+            return slice instanceof Page<T> ? new SliceImpl<>(slice.getContent(), slice.getPageable(), slice.hasNext())
+                    : slice;
+        }
+        if (slice instanceof Page<T>) {
+            return slice;
+        }
+        long seen = slice.getPageable().getOffset() + slice.getNumberOfElements();
+        if (!slice.hasNext() && (slice.hasContent() || slice.getPageable().getOffset() == 0)) {
+            return new PageImpl<>(slice.getContent(), slice.getPageable(), seen);
+        }
+        long total = this == EXACT ? exact.getAsLong() : estimate.getAsLong();
+        if (slice.hasNext()) {
+            total = Math.max(total, seen + 1);
+        }
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+}
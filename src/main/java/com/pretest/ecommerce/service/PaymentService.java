@@ -4,7 +4,6 @@ import com.pretest.ecommerce.dto.PaymentRequest;
 import com.pretest.ecommerce.dto.TransactionResponse;
 import com.pretest.ecommerce.entity.Payment;
 import com.pretest.ecommerce.entity.Transaction;
-import com.pretest.ecommerce.entity.User;
 import com.pretest.ecommerce.repository.PaymentRepository;
 import com.pretest.ecommerce.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Service
 public class PaymentService {
@@ -28,11 +28,11 @@ public class PaymentService {
     private TransactionService transactionService;
 
     @Transactional
-    public TransactionResponse pay(User user, PaymentRequest request) {
+    public TransactionResponse pay(UUID userId, PaymentRequest request) {
         Transaction transaction = transactionRepository.findByInvoiceNumber(request.getInvoiceNumber())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction not found"));
 
-        if (!transaction.getUser().getId().equals(user.getId())) {
+        if (!transaction.getUser().getId().equals(userId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "This transaction does not belong to you");
         }
 
@@ -57,6 +57,6 @@ public class PaymentService {
         transaction.setUpdatedAt(LocalDateTime.now());
         transactionRepository.save(transaction);
 
-        return transactionService.getTransactionByInvoice(user, request.getInvoiceNumber());
+        return transactionService.getTransactionByInvoice(userId, request.getInvoiceNumber());
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.pretest.ecommerce.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.zset.DefaultTuple;
+import org.springframework.data.redis.connection.zset.Tuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last-seen time of every user, kept in one Redis sorted set ({@code user_last_seen}, user id
+ * scored by epoch ms). A user counts as online when seen within {@code noptzy.presence.online-window}.
+ * <p>
+ * {@link #touch} is called on every authenticated request but writes at most once per user per
+ * {@code write-interval}, and those writes are batched into one {@code ZADD} per
+ * {@code flush-interval}. Users not seen for {@code retention} are trimmed from the set.
+ */
+@Service
+public class PresenceService {
+
+    private static final String LAST_SEEN_KEY = "user_last_seen";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${noptzy.presence.online-window}")
+    private Long onlineWindow;
+
+    @Value("${noptzy.presence.write-interval}")
+    private Long writeInterval;
+
+    @Value("${noptzy.presence.retention}")
+    private Long retention;
+
+    private Cache<UUID, Boolean> recentlyWritten;
+
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        recentlyWritten = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(writeInterval))
+                .build();
+    }
+
+    public void touch(UUID userId) {
+        if (recentlyWritten.asMap().putIfAbsent(userId, Boolean.TRUE) == null) {
+            pending.put(userId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Marks the user offline right away, e.g. on logout.
+     */
+    public void clear(UUID userId) {
+        pending.remove(userId);
+        recentlyWritten.invalidate(userId);
+        redisTemplate.opsForZSet().remove(LAST_SEEN_KEY, userId.toString());
+    }
+
+    public boolean isOnline(UUID userId) {
+        Double lastSeen = redisTemplate.opsForZSet().score(LAST_SEEN_KEY, userId.toString());
+        return lastSeen != null && lastSeen >= System.currentTimeMillis() - onlineWindow;
+    }
+
+    public Set<UUID> findOnline(Collection<UUID> userIds) {
+        return findOnline(userIds, Duration.ofMillis(onlineWindow));
+    }
+
+    /**
+     * The users among {@code userIds} seen within {@code within}, in one {@code ZMSCORE}.
+     */
+    public Set<UUID> findOnline(Collection<UUID> userIds, Duration within) {
+        List<UUID> ids = List.copyOf(new HashSet<>(userIds));
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Double> lastSeen = redisTemplate.opsForZSet()
+                .score(LAST_SEEN_KEY, ids.stream().map(UUID::toString).toArray());
+        long since = System.currentTimeMillis() - within.toMillis();
+        Set<UUID> online = new HashSet<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Double seen = lastSeen == null ? null : lastSeen.get(i);
+            if (seen != null && seen >= since) {
+                online.add(ids.get(i));
+            }
+        }
+        return online;
+    }
+
+    @Scheduled(fixedDelayString = "${noptzy.presence.flush-interval}")
+    public void flush() {
+        Set<Tuple> batch = new HashSet<>();
+        pending.forEach((userId, seenAt) -> {
+            // a touch that lands meanwhile stays pending for the next flush
+            if (pending.remove(userId, seenAt)) {
+                batch.add(new DefaultTuple(userId.toString().getBytes(StandardCharsets.UTF_8), seenAt.doubleValue()));
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // GT: a node flushing late never moves someone's last-seen backwards
+        byte[] key = LAST_SEEN_KEY.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.zSetCommands()
+                .zAdd(key, batch, RedisZSetCommands.ZAddArgs.empty().gt()));
+    }
+
+    @Scheduled(fixedDelayString = "${noptzy.presence.trim-interval}")
+    public void trim() {
+        redisTemplate.opsForZSet()
+                .removeRangeByScore(LAST_SEEN_KEY, Double.NEGATIVE_INFINITY, System.currentTimeMillis() - retention);
+    }
+}
@@ -0,0 +1,218 @@
+package com.pretest.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pretest.ecommerce.dto.ProductResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of single products, as {@code GET /api/products/{productId}} returns them:
+ * a size-bounded node-local tier in front of a Redis tier every node shares. A product's entry
+ * is evicted once the transaction changing it commits, from Redis and, through
+ * {@link #EVICTION_CHANNEL}, from every node's local tier. A store's products are evicted
+ * together when its name, location or rating changes; Redis keeps the ids of each store's
+ * cached products for that. Both tiers expire entries too, which bounds how long a lost message
+ * or a load racing an eviction can leave a stale product.
+ * <p>
+ * Hit ratios are the {@code cache.gets} meters of {@code product-local} and {@code product-redis}.
+ */
+@Slf4j
+@Component
+public class ProductCache implements MessageListener {
+
+    public static final String EVICTION_CHANNEL = "product_cache:evicted";
+
+    private static final String PRODUCT_PREFIX = "product_cache:product:";
+
+    private static final String STORE_PREFIX = "product_cache:store:";
+
+    @Value("${noptzy.product.cache.enabled}")
+    private Boolean enabled;
+
+    @Value("${noptzy.product.cache.local.max-size}")
+    private Long maxSize;
+
+    @Value("${noptzy.product.cache.local.ttl}")
+    private Long localTtl;
+
+    @Value("${noptzy.product.cache.redis.ttl}")
+    private Long redisTtl;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private Cache<Long, ProductResponse> local;
+
+    private Counter redisHits;
+
+    private Counter redisMisses;
+
+    private Counter redisFailures;
+
+    @PostConstruct
+    void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtl))
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(meters -> {
+            CaffeineCacheMetrics.monitor(meters, local, "product-local");
+            redisHits = Counter.builder("cache.gets").tag("cache", "product-redis").tag("result", "hit")
+                    .register(meters);
+            redisMisses = Counter.builder("cache.gets").tag("cache", "product-redis").tag("result", "miss")
+                    .register(meters);
+            redisFailures = Counter.builder("product.cache.redis.failures").register(meters);
+        });
+    }
+
+    /**
+     * The product with this id, from the local tier, else Redis, else {@code loader}, filling the
+     * tiers it missed. Concurrent misses on one node share a single load.
+     */
+    public ProductResponse get(Long productId, Function<Long, ProductResponse> loader) {
+        if (!enabled) {
+            return loader.apply(productId);
+        }
+        return local.get(productId, id -> {
+            ProductResponse product = read(id);
+            if (product == null) {
+                product = loader.apply(id);
+                write(product);
+            }
+            return product;
+        });
+    }
+
+    /**
+     * Evicts these products on every node once the surrounding transaction commits.
+     */
+    public void evict(Collection<Long> productIds) {
+        afterCommit(new Eviction(List.copyOf(productIds), null));
+    }
+
+    /**
+     * Evicts every product of this store on every node once the surrounding transaction commits.
+     */
+    public void evictStore(Long storeId) {
+        afterCommit(new Eviction(List.of(), storeId));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            evictLocal(objectMapper.readValue(message.getBody(), Eviction.class));
+        } catch (IOException e) {
+            log.warn("Ignoring malformed product cache eviction", e);
+        }
+    }
+
+    private ProductResponse read(Long productId) {
+        try {
+            String json = redisTemplate.opsForValue().get(PRODUCT_PREFIX + productId);
+            count(json == null ? redisMisses : redisHits);
+            return json == null ? null : objectMapper.readValue(json, ProductResponse.class);
+        } catch (DataAccessException | JsonProcessingException e) {
+            count(redisFailures);
+            log.debug("Product cache read failed, loading product {}", productId, e);
+            return null;
+        }
+    }
+
+    private void write(ProductResponse product) {
+        try {
+            Duration ttl = Duration.ofMillis(redisTtl);
+            redisTemplate.opsForValue().set(PRODUCT_PREFIX + product.getId(), objectMapper.writeValueAsString(product), ttl);
+            redisTemplate.opsForSet().add(STORE_PREFIX + product.getStoreId(), String.valueOf(product.getId()));
+            redisTemplate.expire(STORE_PREFIX + product.getStoreId(), ttl);
+        } catch (DataAccessException | JsonProcessingException e) {
+            count(redisFailures);
+            log.debug("Product cache write failed for product {}", product.getId(), e);
+        }
+    }
+
+    private void afterCommit(Eviction eviction) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(eviction);
+                }
+            });
+        } else {
+            publish(eviction);
+        }
+    }
+
+    private void publish(Eviction eviction) {
+        evictLocal(eviction);
+        try {
+            List<String> keys = new ArrayList<>();
+            eviction.productIds().forEach(id -> keys.add(PRODUCT_PREFIX + id));
+            if (eviction.storeId() != null) {
+                Set<String> cached = redisTemplate.opsForSet().members(STORE_PREFIX + eviction.storeId());
+                if (cached != null) {
+                    cached.forEach(id -> keys.add(PRODUCT_PREFIX + id));
+                }
+                keys.add(STORE_PREFIX + eviction.storeId());
+            }
+            redisTemplate.delete(keys);
+            redisTemplate.convertAndSend(EVICTION_CHANNEL, objectMapper.writeValueAsString(eviction));
+        } catch (JsonProcessingException | DataAccessException e) {
+            count(redisFailures);
+            log.warn("Could not evict products from Redis, other nodes serve them until they expire", e);
+        }
+    }
+
+    private void evictLocal(Eviction eviction) {
+        local.invalidateAll(eviction.productIds());
+        if (eviction.storeId() != null) {
+            local.asMap().values().removeIf(product -> eviction.storeId().equals(product.getStoreId()));
+        }
+    }
+
+    private void count(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Products to evict, by id or by store, as broadcast to other nodes.
+     */
+    record Eviction(List<Long> productIds, Long storeId) {
+    }
+}
@@ -0,0 +1,749 @@
+package com.pretest.ecommerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretest.ecommerce.dto.PriceFacetCount;
+import com.pretest.ecommerce.dto.ProductDocument;
+import com.pretest.ecommerce.dto.SearchProductRequest;
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.exception.ServiceBusyException;
+import com.pretest.ecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntConsumer;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+/**
+ * In-memory inverted index over product name words, category, color and store, so listing and
+ * name searches are matched and counted without Postgres scanning the catalog. The product id is
+ * the document id: every term maps to a {@link RoaringBitmap} of the ids carrying it, a search is
+ * the AND of its filters, and a name matches by OR-ing every indexed word that contains it, which
+ * is exactly what {@code lower(name) LIKE '%word%'} matches. Those words are found through the
+ * substrings of up to three characters of the vocabulary, so a lookup reads the few words sharing
+ * them rather than the whole vocabulary. Names of several words match with
+ * {@link ProductService#TERMS_ALL terms all or any}. Prices are kept per id and bucketed in narrow
+ * bands, so a price range only compares the ids in its two edge bands.
+ * <p>
+ * The index is built from {@link ProductRepository#findDocuments} on startup and every
+ * {@code noptzy.search.index.rebuild-interval}; until the first build finishes {@link #search}
+ * returns null and callers use the database. {@link ProductService} reports each change with the
+ * product's previous and new state once its transaction commits, and the change is broadcast
+ * on {@link #CHANGE_CHANNEL} so every node applies it. Changes arriving during a build are
+ * replayed on the new index; the rebuild repairs missed messages.
+ */
+@Slf4j
+@Service
+public class ProductIndex implements MessageListener {
+
+    public static final String CHANGE_CHANNEL = "product_index:changed";
+
+    public static final String FACET_CATEGORY = "category";
+
+    public static final String FACET_PRICE = "price";
+
+    public static final String FACET_STORE = "store";
+
+    private static final long NOT_READY_RETRY_SECONDS = 10;
+
+    // below one match in this many products, facets count matches one by one instead of intersecting postings
+    private static final long FACET_SCAN_FACTOR = 16;
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{M}\\p{N}]+");
+
+    // words are looked up by their substrings of up to this many characters
+    private static final int GRAM_LENGTH = 3;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{M}\\p{N}]+");
+
+    // upper bounds (exclusive, in cents) of the price bands, ten per decade from 1,000 to 1,000,000,000:
+    // 1,000, 1,250, 1,600, 2,000, 2,500, 3,200, 4,000, 5,000, 6,300, 8,000, 10,000 ...
+    private static final long[] PRICE_BANDS = LongStream.rangeClosed(5, 11)
+            .flatMap(decade -> LongStream.of(100, 125, 160, 200, 250, 320, 400, 500, 630, 800)
+                    .map(step -> step * (long) Math.pow(10, decade - 2)))
+            .filter(bound -> bound <= 100000000000L)
+            .toArray();
+
+    // the band bounds that price facets split at, 1-2-5 per decade: 1,000, 2,000, 5,000, 10,000 ...
+    private static final long[] PRICE_FACET_BOUNDS = Arrays.stream(PRICE_BANDS)
+            .filter(bound -> {
+                long leading = bound;
+                while (leading % 10 == 0) {
+                    leading /= 10;
+                }
+                return leading == 1 || leading == 2 || leading == 5;
+            })
+            .toArray();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${noptzy.search.index.enabled}")
+    private Boolean enabled;
+
+    @Value("${noptzy.search.index.batch-size}")
+    private Integer batchSize;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock: the live index, and the changes seen while a build is running
+    private Postings postings;
+
+    private List<Change> pending;
+
+    public static ProductDocument document(Product product) {
+        return new ProductDocument(product.getId(), product.getName(), product.getCategory(), product.getColor(),
+                product.getPrice(), product.getStore().getId());
+    }
+
+    /**
+     * Ids of the products matching {@code request}, ascending, as the requested page; with
+     * {@code after}, only ids above it count, total included. Returns null when the index can't
+     * answer: not built yet, or a name that is neither a single word nor matched by its
+     * {@code terms} (a phrase has to match in order, which only the database checks).
+     */
+    public Page<Long> search(SearchProductRequest request, Long after, Pageable pageable) {
+        List<String> terms = terms(request);
+        if (terms != null && terms.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (postings == null) {
+                return null;
+            }
+            RoaringBitmap matches = postings.match(postings.named(terms, isAny(request)), request.getCategory(),
+                    request.getColor(), request.getStoreId(), request.getMinPrice(), request.getMaxPrice());
+            long skipped = after == null || after < 0 ? 0 : matches.rankLong((int) Math.min(after, Integer.MAX_VALUE));
+            long total = matches.getLongCardinality() - skipped;
+            List<Long> ids = new ArrayList<>(pageable.getPageSize());
+            if (pageable.getOffset() < total) {
+                PeekableIntIterator iterator = matches.getIntIterator();
+                iterator.advanceIfNeeded(matches.select((int) (skipped + pageable.getOffset())));
+                while (iterator.hasNext() && ids.size() < pageable.getPageSize()) {
+                    ids.add((long) iterator.next());
+                }
+            }
+            return new PageImpl<>(ids, pageable, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The requested page of matches, as {@link #search} finds them, with how many matches each
+     * category, price range and store has. A facet the request filters on is counted as if that
+     * filter were unset, so its other values show what picking them instead would give. Only the
+     * {@code facets} asked for are counted. There is no database fallback: a phrase of several
+     * words is a 400 and an index not built yet a 503.
+     */
+    public Facets facets(SearchProductRequest request, Set<String> facets, Pageable pageable) {
+        List<String> terms = terms(request);
+        if (terms != null && terms.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Facets need a single-word name, or terms all or any");
+        }
+
+        lock.readLock().lock();
+        try {
+            if (postings == null) {
+                throw new ServiceBusyException("Search index is not ready", NOT_READY_RETRY_SECONDS);
+            }
+            RoaringBitmap named = postings.named(terms, isAny(request));
+            RoaringBitmap matches = postings.match(named, request.getCategory(), request.getColor(),
+                    request.getStoreId(), request.getMinPrice(), request.getMaxPrice());
+            List<Long> ids = new ArrayList<>(pageable.getPageSize());
+            if (pageable.getOffset() < matches.getLongCardinality()) {
+                PeekableIntIterator iterator = matches.getIntIterator();
+                iterator.advanceIfNeeded(matches.select((int) pageable.getOffset()));
+                while (iterator.hasNext() && ids.size() < pageable.getPageSize()) {
+                    ids.add((long) iterator.next());
+                }
+            }
+
+            Map<String, Long> categories = null;
+            if (facets.contains(FACET_CATEGORY)) {
+                RoaringBitmap counted = request.getCategory() == null ? matches : postings.match(named, null,
+                        request.getColor(), request.getStoreId(), request.getMinPrice(), request.getMaxPrice());
+                categories = postings.countCategories(counted);
+            }
+            List<PriceFacetCount> prices = null;
+            if (facets.contains(FACET_PRICE)) {
+                RoaringBitmap counted = request.getMinPrice() == null && request.getMaxPrice() == null ? matches
+                        : postings.match(named, request.getCategory(), request.getColor(), request.getStoreId(), null, null);
+                prices = postings.countPrices(counted);
+            }
+            Map<Long, Long> stores = null;
+            if (facets.contains(FACET_STORE)) {
+                RoaringBitmap counted = request.getStoreId() == null ? matches : postings.match(named,
+                        request.getCategory(), request.getColor(), null, request.getMinPrice(), request.getMaxPrice());
+                stores = postings.countStores(counted);
+            }
+            return new Facets(new PageImpl<>(ids, pageable, matches.getLongCardinality()), categories, prices, stores);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records that a product changed from {@code previous} to {@code current}, null for a create
+     * or a delete. Applied on this node and broadcast once the surrounding transaction commits.
+     */
+    public void changed(ProductDocument previous, ProductDocument current) {
+        if (!enabled) {
+            return;
+        }
+        Change change = new Change(nodeId, previous, current);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(change);
+                }
+            });
+        } else {
+            publish(change);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${noptzy.search.index.rebuild-interval}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        Postings built = new Postings();
+        try {
+            long after = 0;
+            List<ProductDocument> batch;
+            do {
+                batch = productRepository.findDocuments(after, PageRequest.of(0, batchSize));
+                for (ProductDocument document : batch) {
+                    built.add(document);
+                }
+                if (!batch.isEmpty()) {
+                    after = batch.get(batch.size() - 1).getId();
+                }
+            } while (batch.size() == batchSize);
+            built.optimize();
+        } catch (RuntimeException e) {
+            log.warn("Product index build failed, searches keep using {}", postings == null ? "the database" : "the previous index", e);
+            built = null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (built != null) {
+                for (Change change : pending) {
+                    built.apply(change);
+                }
+                postings = built;
+                log.info("Indexed {} products in {} ms", built.size(), (System.nanoTime() - start) / 1000000);
+            }
+            pending = null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Product index build failed, searches keep using the database", e);
+            postings = null;
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The lowercased words of {@code name}, as the index splits names.
+     */
+    static Set<String> words(String name) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : WORD_SEPARATOR.split(name.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The words the request's name has to contain, all of them or, with terms any, one; null for
+     * no name filter, empty for a phrase only the database can match.
+     */
+    private static List<String> terms(SearchProductRequest request) {
+        if (request.getName() == null || request.getName().isEmpty()) {
+            return null;
+        }
+        if (request.getTerms() == null || ProductService.TERMS_PHRASE.equals(request.getTerms())) {
+            String word = request.getName().toLowerCase(Locale.ROOT);
+            return WORD.matcher(word).matches() ? List.of(word) : List.of();
+        }
+        Set<String> words = words(request.getName());
+        return words.isEmpty() ? null : List.copyOf(words);
+    }
+
+    private static boolean isAny(SearchProductRequest request) {
+        return ProductService.TERMS_ANY.equals(request.getTerms());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Change change = objectMapper.readValue(message.getBody(), Change.class);
+            if (!nodeId.equals(change.origin())) {
+                apply(change);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring malformed product index change", e);
+        }
+    }
+
+    private void publish(Change change) {
+        apply(change);
+        try {
+            redisTemplate.convertAndSend(CHANGE_CHANNEL, objectMapper.writeValueAsString(change));
+        } catch (JsonProcessingException | DataAccessException e) {
+            log.warn("Could not broadcast product index change, other nodes catch up on their next rebuild", e);
+        }
+    }
+
+    private void apply(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(change);
+            }
+            if (postings != null) {
+                postings.apply(change);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Product index disabled until the next rebuild", e);
+            postings = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * A page of matching ids and the facet counts asked for, null for the others.
+     */
+    public record Facets(Page<Long> ids, Map<String, Long> categories, List<PriceFacetCount> prices,
+            Map<Long, Long> stores) {
+    }
+
+    /**
+     * A product's state before and after a change, as broadcast to other nodes.
+     */
+    record Change(String origin, ProductDocument previous, ProductDocument current) {
+    }
+
+    /**
+     * The index itself; not thread-safe, {@link ProductIndex} guards it.
+     */
+    private static class Postings {
+
+        private final RoaringBitmap all = new RoaringBitmap();
+
+        private final Map<String, RoaringBitmap> words = new HashMap<>();
+
+        // every word indexed so far by code, and for each substring of up to GRAM_LENGTH characters
+        // the codes of the words containing it; a word whose postings emptied keeps its code
+        private final Map<String, Integer> wordCode = new HashMap<>();
+
+        private final List<String> wordValues = new ArrayList<>();
+
+        private final Map<String, RoaringBitmap> wordGrams = new HashMap<>();
+
+        private final Map<String, RoaringBitmap> categories = new HashMap<>();
+
+        private final Map<String, RoaringBitmap> colors = new HashMap<>();
+
+        private final Map<Long, RoaringBitmap> stores = new HashMap<>();
+
+        private final RoaringBitmap[] priceBands = new RoaringBitmap[PRICE_BANDS.length + 1];
+
+        private long[] prices = new long[1024];
+
+        // per id, the category (0 for none, else its position in categoryValues plus one) and the
+        // store (its position in storeValues), for counting facets one match at a time
+        private int[] categoryCodes = new int[1024];
+
+        private int[] storeCodes = new int[1024];
+
+        private final Map<String, Integer> categoryCode = new HashMap<>();
+
+        private final List<String> categoryValues = new ArrayList<>();
+
+        private final Map<Long, Integer> storeCode = new HashMap<>();
+
+        private final List<Long> storeValues = new ArrayList<>();
+
+        Postings() {
+            Arrays.setAll(priceBands, band -> new RoaringBitmap());
+        }
+
+        long size() {
+            return all.getLongCardinality();
+        }
+
+        void apply(Change change) {
+            if (change.previous() != null) {
+                remove(change.previous());
+            }
+            if (change.current() != null) {
+                add(change.current());
+            }
+        }
+
+        void add(ProductDocument document) {
+            int id = documentId(document.getId());
+            all.add(id);
+            for (String word : words(document.getName())) {
+                words.computeIfAbsent(word, this::newWord).add(id);
+            }
+            if (document.getCategory() != null) {
+                categories.computeIfAbsent(document.getCategory(), key -> new RoaringBitmap()).add(id);
+            }
+            if (document.getColor() != null) {
+                colors.computeIfAbsent(document.getColor(), key -> new RoaringBitmap()).add(id);
+            }
+            stores.computeIfAbsent(document.getStoreId(), key -> new RoaringBitmap()).add(id);
+
+            if (id >= prices.length) {
+                prices = Arrays.copyOf(prices, Math.max(id + 1, prices.length + (prices.length >> 1)));
+                categoryCodes = Arrays.copyOf(categoryCodes, prices.length);
+                storeCodes = Arrays.copyOf(storeCodes, prices.length);
+            }
+            prices[id] = document.getPrice().movePointRight(2).longValue();
+            categoryCodes[id] = document.getCategory() == null ? 0 : code(categoryCode, categoryValues, document.getCategory()) + 1;
+            storeCodes[id] = code(storeCode, storeValues, document.getStoreId());
+            priceBands[band(prices[id])].add(id);
+        }
+
+        void remove(ProductDocument document) {
+            int id = documentId(document.getId());
+            if (!all.contains(id)) {
+                return;
+            }
+            all.remove(id);
+            for (String word : words(document.getName())) {
+                remove(words, word, id);
+            }
+            remove(categories, document.getCategory(), id);
+            remove(colors, document.getColor(), id);
+            remove(stores, document.getStoreId(), id);
+            priceBands[band(prices[id])].remove(id);
+        }
+
+        /**
+         * Ids whose name contains every one of {@code terms}, or with {@code any} at least one, or
+         * null for no name filter.
+         */
+        RoaringBitmap named(List<String> terms, boolean any) {
+            if (terms == null) {
+                return null;
+            }
+            List<RoaringBitmap> named = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                named.add(named(term));
+            }
+            if (named.size() == 1) {
+                return named.get(0);
+            }
+            if (any) {
+                return FastAggregation.or(named.iterator());
+            }
+            named.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+            RoaringBitmap matches = named.get(0).clone();
+            for (int i = 1; i < named.size() && !matches.isEmpty(); i++) {
+                matches.and(named.get(i));
+            }
+            return matches;
+        }
+
+        /**
+         * Ids whose name contains {@code word}: the postings of the indexed words containing it,
+         * found among the words that share all its substrings of {@link #GRAM_LENGTH} characters.
+         */
+        RoaringBitmap named(String word) {
+            List<RoaringBitmap> containing = new ArrayList<>();
+            candidates(word).forEach((IntConsumer) code -> {
+                String indexed = wordValues.get(code);
+                RoaringBitmap ids = words.get(indexed);
+                if (ids != null && indexed.contains(word)) {
+                    containing.add(ids);
+                }
+            });
+            return containing.isEmpty() ? new RoaringBitmap() : FastAggregation.or(containing.iterator());
+        }
+
+        RoaringBitmap match(RoaringBitmap named, String category, String color, Long storeId, BigDecimal minPrice,
+                BigDecimal maxPrice) {
+            List<RoaringBitmap> filters = new ArrayList<>();
+            if (named != null) {
+                filters.add(named);
+            }
+            if (category != null) {
+                filters.add(categories.getOrDefault(category, new RoaringBitmap()));
+            }
+            if (color != null) {
+                filters.add(colors.getOrDefault(color, new RoaringBitmap()));
+            }
+            if (storeId != null) {
+                filters.add(stores.getOrDefault(storeId, new RoaringBitmap()));
+            }
+
+            // callers only read the result, so it may be one of the postings themselves
+            RoaringBitmap matches;
+            if (filters.isEmpty()) {
+                matches = all;
+            } else if (filters.size() == 1) {
+                matches = filters.get(0);
+            } else {
+                filters.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+                matches = filters.get(0).clone();
+                for (int i = 1; i < filters.size() && !matches.isEmpty(); i++) {
+                    matches.and(filters.get(i));
+                }
+            }
+            if (minPrice != null || maxPrice != null) {
+                matches = inPriceRange(matches, minPrice, maxPrice);
+            }
+            return matches;
+        }
+
+        Map<String, Long> countCategories(RoaringBitmap matches) {
+            if (!sparse(matches)) {
+                return count(categories, matches);
+            }
+            long[] counts = new long[categoryValues.size() + 1];
+            matches.forEach((IntConsumer) id -> counts[categoryCodes[id]]++);
+            Map<String, Long> byCategory = new HashMap<>();
+            for (int code = 1; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    byCategory.put(categoryValues.get(code - 1), counts[code]);
+                }
+            }
+            return byCategory;
+        }
+
+        Map<Long, Long> countStores(RoaringBitmap matches) {
+            if (!sparse(matches)) {
+                return count(stores, matches);
+            }
+            long[] counts = new long[storeValues.size()];
+            matches.forEach((IntConsumer) id -> counts[storeCodes[id]]++);
+            Map<Long, Long> byStore = new HashMap<>();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    byStore.put(storeValues.get(code), counts[code]);
+                }
+            }
+            return byStore;
+        }
+
+        /**
+         * Matches per price facet range. The ranges are unions of whole bands, so only sparse
+         * matches, counted one by one, have their price read.
+         */
+        List<PriceFacetCount> countPrices(RoaringBitmap matches) {
+            long[] bandCounts = new long[priceBands.length];
+            if (sparse(matches)) {
+                matches.forEach((IntConsumer) id -> bandCounts[band(prices[id])]++);
+            } else {
+                Arrays.setAll(bandCounts, band -> cardinality(priceBands[band], matches));
+            }
+
+            List<PriceFacetCount> counts = new ArrayList<>();
+            long from = 0;
+            long count = 0;
+            for (int band = 0; band < priceBands.length; band++) {
+                count += bandCounts[band];
+                Long to = band == PRICE_BANDS.length ? null : PRICE_BANDS[band];
+                if (to == null || Arrays.binarySearch(PRICE_FACET_BOUNDS, to) >= 0) {
+                    if (count > 0) {
+                        counts.add(new PriceFacetCount(BigDecimal.valueOf(from, 2),
+                                to == null ? null : BigDecimal.valueOf(to, 2), count));
+                    }
+                    from = to == null ? from : to;
+                    count = 0;
+                }
+            }
+            return counts;
+        }
+
+        void optimize() {
+            all.runOptimize();
+            words.values().forEach(RoaringBitmap::runOptimize);
+            wordGrams.values().forEach(RoaringBitmap::runOptimize);
+            categories.values().forEach(RoaringBitmap::runOptimize);
+            colors.values().forEach(RoaringBitmap::runOptimize);
+            stores.values().forEach(RoaringBitmap::runOptimize);
+            Arrays.stream(priceBands).forEach(RoaringBitmap::runOptimize);
+        }
+
+        private RoaringBitmap newWord(String word) {
+            if (!wordCode.containsKey(word)) {
+                int code = code(wordCode, wordValues, word);
+                for (int length = 1; length <= Math.min(GRAM_LENGTH, word.length()); length++) {
+                    for (int start = 0; start + length <= word.length(); start++) {
+                        wordGrams.computeIfAbsent(word.substring(start, start + length), key -> new RoaringBitmap())
+                                .add(code);
+                    }
+                }
+            }
+            return new RoaringBitmap();
+        }
+
+        /**
+         * Codes of the words that may contain {@code word}: those with each of its substrings.
+         */
+        private RoaringBitmap candidates(String word) {
+            if (word.length() <= GRAM_LENGTH) {
+                return wordGrams.getOrDefault(word, new RoaringBitmap());
+            }
+            List<RoaringBitmap> grams = new ArrayList<>();
+            for (int start = 0; start + GRAM_LENGTH <= word.length(); start++) {
+                RoaringBitmap codes = wordGrams.get(word.substring(start, start + GRAM_LENGTH));
+                if (codes == null) {
+                    return new RoaringBitmap();
+                }
+                grams.add(codes);
+            }
+            grams.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+            RoaringBitmap codes = grams.get(0).clone();
+            for (int i = 1; i < grams.size() && !codes.isEmpty(); i++) {
+                codes.and(grams.get(i));
+            }
+            return codes;
+        }
+
+        private RoaringBitmap inPriceRange(RoaringBitmap candidates, BigDecimal minPrice, BigDecimal maxPrice) {
+            long low = minPrice == null ? Long.MIN_VALUE : minPrice.movePointRight(2).setScale(0, RoundingMode.CEILING).longValue();
+            long high = maxPrice == null ? Long.MAX_VALUE : maxPrice.movePointRight(2).setScale(0, RoundingMode.FLOOR).longValue();
+            RoaringBitmap inRange = new RoaringBitmap();
+            for (int band = 0; band < priceBands.length; band++) {
+                long bandLow = band == 0 ? Long.MIN_VALUE : PRICE_BANDS[band - 1];
+                long bandHigh = band == PRICE_BANDS.length ? Long.MAX_VALUE : PRICE_BANDS[band] - 1;
+                if (bandHigh < low || bandLow > high) {
+                    continue;
+                }
+                RoaringBitmap inBand = RoaringBitmap.and(candidates, priceBands[band]);
+                if (bandLow >= low && bandHigh <= high) {
+                    inRange.or(inBand);
+                } else {
+                    int[] ids = inBand.toArray();
+                    int kept = 0;
+                    for (int id : ids) {
+                        if (prices[id] >= low && prices[id] <= high) {
+                            ids[kept++] = id;
+                        }
+                    }
+                    inRange.addN(ids, 0, kept);
+                }
+            }
+            return inRange;
+        }
+
+        /**
+         * Whether {@code matches} are few enough to count one by one. Sparse ids are kept as sorted
+         * arrays, which every intersection walks in full, so intersecting them with each of a
+         * facet's postings costs far more than one pass over the matches.
+         */
+        private boolean sparse(RoaringBitmap matches) {
+            return matches.getLongCardinality() * FACET_SCAN_FACTOR < all.getLongCardinality();
+        }
+
+        /**
+         * Matches of each value of {@code postings} among {@code matches}, leaving out values with none.
+         */
+        private <K> Map<K, Long> count(Map<K, RoaringBitmap> postings, RoaringBitmap matches) {
+            Map<K, Long> counts = new HashMap<>();
+            postings.forEach((value, ids) -> {
+                long count = cardinality(ids, matches);
+                if (count > 0) {
+                    counts.put(value, count);
+                }
+            });
+            return counts;
+        }
+
+        private long cardinality(RoaringBitmap ids, RoaringBitmap matches) {
+            return matches == all ? ids.getLongCardinality() : RoaringBitmap.andCardinality(ids, matches);
+        }
+
+        private static <K> int code(Map<K, Integer> codes, List<K> values, K value) {
+            return codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        private static int band(long price) {
+            int band = Arrays.binarySearch(PRICE_BANDS, price);
+            return band >= 0 ? band + 1 : -band - 1;
+        }
+
+        private static <K> void remove(Map<K, RoaringBitmap> postings, K term, int id) {
+            RoaringBitmap ids = term == null ? null : postings.get(term);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        private static int documentId(Long id) {
+            if (id == null || id < 0 || id > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Id " + id + " doesn't fit the index");
+            }
+            return id.intValue();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.pretest.ecommerce.service;
 
 import com.pretest.ecommerce.dto.CreateProductRequest;
+import com.pretest.ecommerce.dto.FacetCount;
+import com.pretest.ecommerce.dto.FacetedProductsResponse;
+import com.pretest.ecommerce.dto.ProductDocument;
 import com.pretest.ecommerce.dto.ProductResponse;
 import com.pretest.ecommerce.dto.SearchProductRequest;
 import com.pretest.ecommerce.dto.UpdateProductRequest;
@@ -8,15 +11,22 @@ import com.pretest.ecommerce.entity.Product;
 import com.pretest.ecommerce.entity.Store;
 import com.pretest.ecommerce.entity.TransactionDetail;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.repository.ProductListingRepository;
 import com.pretest.ecommerce.repository.ProductRepository;
+import com.pretest.ecommerce.repository.RowEstimateRepository;
 import com.pretest.ecommerce.repository.StoreRepository;
 import com.pretest.ecommerce.repository.TransactionDetailRepository;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -25,22 +35,62 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
 
+    public static final String SEARCH_LIKE = "like";
+
+    public static final String SEARCH_FULLTEXT = "fulltext";
+
+    public static final String SEARCH_FUZZY = "fuzzy";
+
+    public static final String TERMS_PHRASE = "phrase";
+
+    public static final String TERMS_ALL = "all";
+
+    public static final String TERMS_ANY = "any";
+
+    private static final Set<String> FACETS = Set.of(ProductIndex.FACET_CATEGORY, ProductIndex.FACET_PRICE,
+            ProductIndex.FACET_STORE);
+
+    @Value("${noptzy.search.fuzzy-threshold}")
+    private Double fuzzyThreshold;
+
+    @Value("${noptzy.search.fuzzy-timeout}")
+    private Long fuzzyTimeout;
+
+    @Value("${noptzy.search.facet-size}")
+    private Integer facetSize;
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired
     private StoreRepository storeRepository;
 
+    @Autowired
+    private ProductListingRepository productListingRepository;
+
+    @Autowired
+    private RowEstimateRepository rowEstimateRepository;
+
     @Autowired
     private TransactionDetailRepository transactionDetailRepository;
 
+    @Autowired
+    private ProductIndex productIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
     @Transactional
     public ProductResponse create(User user, Long storeId, CreateProductRequest request) {
         Store store = storeRepository.findById(storeId)
@@ -63,6 +113,7 @@ public class ProductService {
         product.setRating(0.0);
 
         productRepository.save(product);
+        productIndex.changed(null, ProductIndex.document(product));
         return toResponse(product);
     }
 
@@ -78,6 +129,7 @@ public class ProductService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Product does not belong to your store");
         }
 
+        ProductDocument previous = ProductIndex.document(product);
         if (request.getName() != null) product.setName(request.getName());
         if (request.getDescription() != null) product.setDescription(request.getDescription());
         if (request.getPrice() != null) product.setPrice(request.getPrice());
@@ -87,6 +139,8 @@ public class ProductService {
         if (request.getColor() != null) product.setColor(request.getColor());
 
         productRepository.save(product);
+        productIndex.changed(previous, ProductIndex.document(product));
+        productCache.evict(List.of(productId));
         return toResponse(product);
     }
 
@@ -103,25 +157,304 @@ public class ProductService {
         }
 
         productRepository.delete(product);
+        productIndex.changed(ProductIndex.document(product), null);
+        productCache.evict(List.of(productId));
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * A product, through {@link ProductCache}. Not transactional, so a cache hit doesn't take a
+     * database connection; a miss loads the product and its store in one statement.
+     */
     public ProductResponse get(Long productId) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"));
-        return toResponse(product);
+        return productCache.get(productId, id -> toResponse(productRepository.findWithStoreById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found"))));
     }
 
+    /**
+     * Lists products matching the request's filters. {@code name} is matched as a substring by
+     * default; with mode {@value #SEARCH_FULLTEXT} it is a full-text query over name, category and
+     * description, and with {@value #SEARCH_FUZZY} it matches names containing a word at least
+     * {@code noptzy.search.fuzzy-threshold} similar, so typos still find the product. Both order
+     * results best match first. The default mode can also be sorted, see {@link ProductSort}, and
+     * with {@code terms} {@value #TERMS_ALL} or {@value #TERMS_ANY} matches each word of the name
+     * as a substring on its own, requiring all of them or any one instead of the whole phrase.
+     * <p>
+     * Unsorted listings in the default mode are answered from {@link ProductIndex} when it can
+     * be, lowest id first; only the page's rows are then read from the database, and the total
+     * comes free whatever {@code request.count} asks for. Otherwise the total is counted as
+     * {@link CountMode} says. Rows are read as listings, see {@link ProductListingRepository}.
+     */
     @Transactional(readOnly = true)
-    public Page<ProductResponse> search(SearchProductRequest request) {
-        Specification<Product> specification = (root, query, builder) -> {
+    public Slice<ProductResponse> search(SearchProductRequest request) {
+        validateTerms(request);
+        Pageable pageable = PageRequest.of(request.getPage(), request.getLimit());
+        ProductSort sort = ProductSort.of(request.getSort());
+        CountMode count = CountMode.of(request.getCount());
+        Slice<ProductResponse> products;
+        if (isLike(request)) {
+            Page<Long> ids = sort == ProductSort.ID ? productIndex.search(request, null, pageable) : null;
+            products = ids != null ? count.total(listings(ids), null, null)
+                    : findAll(request, sort == ProductSort.ID ? null : sort, count, pageable);
+        } else if (SEARCH_FULLTEXT.equals(request.getMode()) || SEARCH_FUZZY.equals(request.getMode())) {
+            if (sort != ProductSort.ID) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Sorting is only supported in search mode like");
+            }
+            if (request.getName() == null || request.getName().isBlank()) {
+                products = findAll(request, null, count, pageable);
+            } else if (SEARCH_FULLTEXT.equals(request.getMode())) {
+                products = count.total(listings(productRepository.searchFullText(request.getName(),
+                                request.getCategory(), request.getColor(), request.getMinPrice(), request.getMaxPrice(),
+                                request.getStoreId(), pageable)),
+                        () -> productRepository.countFullText(request.getName(), request.getCategory(),
+                                request.getColor(), request.getMinPrice(), request.getMaxPrice(), request.getStoreId()),
+                        () -> estimate(request, "p.search_vector @@ websearch_to_tsquery('simple', ?)", request.getName()));
+            } else {
+                products = searchFuzzy(request, count, pageable);
+            }
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown search mode");
+        }
+
+        return products;
+    }
+
+    /**
+     * A page of products matching the request's filters, lowest id first, with how many matches
+     * each category, price range and store has, all from one pass over {@link ProductIndex}
+     * instead of a GROUP BY per facet. {@code facets} picks which are counted, all by default.
+     * Categories and stores are the {@code noptzy.search.facet-size} most common, stores labelled
+     * with their name. {@code name} matches as in the default search mode.
+     */
+    @Transactional(readOnly = true)
+    public FacetedProductsResponse facets(SearchProductRequest request, List<String> facets) {
+        validateTerms(request);
+        Set<String> counted = facets == null || facets.isEmpty() ? FACETS : new HashSet<>(facets);
+        if (!FACETS.containsAll(counted)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown facet");
+        }
+
+        ProductIndex.Facets result = productIndex.facets(request, counted,
+                PageRequest.of(request.getPage(), request.getLimit()));
+
+        List<FacetCount> stores = null;
+        if (result.stores() != null) {
+            List<Map.Entry<Long, Long>> top = mostCommon(result.stores());
+            Map<Long, String> names = storeRepository.findAllById(top.stream().map(Map.Entry::getKey).toList()).stream()
+                    .collect(Collectors.toMap(Store::getId, Store::getName));
+            stores = top.stream()
+                    .map(entry -> new FacetCount(String.valueOf(entry.getKey()), names.get(entry.getKey()), entry.getValue()))
+                    .toList();
+        }
+
+        return FacetedProductsResponse.builder()
+                .products(productListingRepository.findAllById(result.ids().getContent()))
+                .total(result.ids().getTotalElements())
+                .categories(result.categories() == null ? null : mostCommon(result.categories()).stream()
+                        .map(entry -> new FacetCount(entry.getKey(), null, entry.getValue()))
+                        .toList())
+                .prices(result.prices())
+                .stores(stores)
+                .build();
+    }
+
+    private <K extends Comparable<K>> List<Map.Entry<K, Long>> mostCommon(Map<K, Long> counts) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(facetSize)
+                .toList();
+    }
+
+    /**
+     * The page after {@code request.cursor}, or the first one when the cursor is empty, in
+     * {@code request.sort} order. Nothing is counted: the slice only knows whether more follow.
+     * Only the default search mode can be paged this way.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ProductResponse> scroll(SearchProductRequest request) {
+        if (!isLike(request)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor paging is only supported in search mode like");
+        }
+        validateTerms(request);
+        ProductSort sort = ProductSort.of(request.getSort());
+        ProductSort.Cursor cursor = request.getCursor() == null || request.getCursor().isEmpty()
+                ? null : sort.parse(request.getCursor());
+        Pageable pageable = PageRequest.of(0, request.getLimit());
+
+        Page<Long> ids = sort == ProductSort.ID
+                ? productIndex.search(request, cursor == null ? null : cursor.id(), pageable) : null;
+        if (ids != null) {
+            return new SliceImpl<>(productListingRepository.findAllById(ids.getContent()), pageable, ids.hasNext());
+        }
+        forceCustomPlansForName(request);
+        return findAll(toSpecification(request, sort, cursor), pageable);
+    }
+
+    /**
+     * The cursor of the page following a {@link #scroll} {@code result}, or null when it's the
+     * last one.
+     */
+    public String nextCursor(SearchProductRequest request, Slice<ProductResponse> result) {
+        if (!isLike(request) || !result.hasNext() || !result.hasContent()) {
+            return null;
+        }
+        return ProductSort.of(request.getSort()).cursor(result.getContent().get(result.getNumberOfElements() - 1));
+    }
+
+    private boolean isLike(SearchProductRequest request) {
+        return request.getMode() == null || SEARCH_LIKE.equals(request.getMode());
+    }
+
+    private void validateTerms(SearchProductRequest request) {
+        if (request.getTerms() == null || TERMS_PHRASE.equals(request.getTerms())) {
+            return;
+        }
+        if (!TERMS_ALL.equals(request.getTerms()) && !TERMS_ANY.equals(request.getTerms())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown terms");
+        }
+        if (!isLike(request)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Terms are only supported in search mode like");
+        }
+    }
+
+    /**
+     * The words a name is matched by one at a time, or null when it is matched as a phrase.
+     */
+    private List<String> nameTerms(SearchProductRequest request) {
+        if (request.getTerms() == null || TERMS_PHRASE.equals(request.getTerms())) {
+            return null;
+        }
+        return List.copyOf(ProductIndex.words(request.getName()));
+    }
+
+    /**
+     * A query whose trigrams occur in most names (e.g. a word every product shares) matches nearly
+     * the whole table; the timeout turns that into a 400 instead of a multi-second scan.
+     */
+    private Slice<ProductResponse> searchFuzzy(SearchProductRequest request, CountMode count, Pageable pageable) {
+        productRepository.configureFuzzySearch(String.valueOf(fuzzyThreshold), String.valueOf(fuzzyTimeout));
+        try {
+            return count.total(listings(productRepository.searchFuzzy(request.getName(), request.getCategory(),
+                            request.getColor(), request.getMinPrice(), request.getMaxPrice(), request.getStoreId(),
+                            pageable)),
+                    () -> productRepository.countFuzzy(request.getName(), request.getCategory(), request.getColor(),
+                            request.getMinPrice(), request.getMaxPrice(), request.getStoreId()),
+                    () -> estimate(request, "lower(?) <% lower(p.name)", request.getName()));
+        } catch (QueryTimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Search is too broad, try a more specific name");
+        }
+    }
+
+    /**
+     * A page of the products matching the request's filters, optionally sorted, fetched one row
+     * long rather than counted; the total is then added as {@code count} says.
+     */
+    private Slice<ProductResponse> findAll(SearchProductRequest request, ProductSort sort, CountMode count,
+            Pageable pageable) {
+        forceCustomPlansForName(request);
+        return count.total(findAll(toSpecification(request, sort, null), pageable),
+                () -> productRepository.count(toSpecification(request, null, null)),
+                () -> estimate(request, null, null));
+    }
+
+    /**
+     * A name is matched with {@code lower(name) LIKE}, which only uses the trigram index when
+     * planned for the pattern, so those statements skip the plan cache; others keep using it.
+     */
+    private void forceCustomPlansForName(SearchProductRequest request) {
+        if (Objects.nonNull(request.getName())) {
+            productRepository.forceCustomPlans();
+        }
+    }
+
+    private Slice<ProductResponse> findAll(Specification<Product> specification, Pageable pageable) {
+        // one row more than asked for tells whether there is a next page
+        List<ProductResponse> listings = productListingRepository.findAll(specification, pageable.getOffset(),
+                pageable.getPageSize() + 1);
+        boolean hasNext = listings.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? listings.subList(0, pageable.getPageSize()) : listings, pageable, hasNext);
+    }
+
+    /**
+     * The planner's estimate of how many products match the request's filters, with
+     * {@code match}, a native condition on {@code products p} taking {@code argument}, in place
+     * of the default name match.
+     */
+    private long estimate(SearchProductRequest request, String match, Object argument) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> arguments = new ArrayList<>();
+        if (Objects.nonNull(match)) {
+            conditions.add(match);
+            arguments.add(argument);
+        } else if (Objects.nonNull(request.getName())) {
+            List<String> terms = nameTerms(request);
+            if (terms == null) {
+                conditions.add("lower(p.name) LIKE ?");
+                arguments.add("%" + request.getName().toLowerCase() + "%");
+            } else if (!terms.isEmpty()) {
+                conditions.add("(" + String.join(TERMS_ANY.equals(request.getTerms()) ? " OR " : " AND ",
+                        Collections.nCopies(terms.size(), "lower(p.name) LIKE ?")) + ")");
+                terms.forEach(term -> arguments.add("%" + term + "%"));
+            }
+        }
+        if (Objects.nonNull(request.getCategory())) {
+            conditions.add("p.category = ?");
+            arguments.add(request.getCategory());
+        }
+        if (Objects.nonNull(request.getColor())) {
+            conditions.add("p.color = ?");
+            arguments.add(request.getColor());
+        }
+        if (Objects.nonNull(request.getMinPrice())) {
+            conditions.add("p.price >= ?");
+            arguments.add(request.getMinPrice());
+        }
+        if (Objects.nonNull(request.getMaxPrice())) {
+            conditions.add("p.price <= ?");
+            arguments.add(request.getMaxPrice());
+        }
+        if (Objects.nonNull(request.getStoreId())) {
+            conditions.add("p.store_id = ?");
+            arguments.add(request.getStoreId());
+        }
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        return rowEstimateRepository.estimate("SELECT 1 FROM products p" + where, arguments.toArray());
+    }
+
+    private Page<ProductResponse> listings(Page<Long> ids) {
+        return new PageImpl<>(productListingRepository.findAllById(ids.getContent()), ids.getPageable(),
+                ids.getTotalElements());
+    }
+
+    private Slice<ProductResponse> listings(Slice<Long> ids) {
+        return new SliceImpl<>(productListingRepository.findAllById(ids.getContent()), ids.getPageable(), ids.hasNext());
+    }
+
+    /**
+     * The request's filters; with a {@code sort}, also ordered by it and, with a {@code cursor},
+     * limited to the rows after it.
+     */
+    private Specification<Product> toSpecification(SearchProductRequest request, ProductSort sort,
+            ProductSort.Cursor cursor) {
+        return (root, query, builder) -> {
             List<Predicate> predicates = new ArrayList<>();
             if (Objects.nonNull(request.getName())) {
-                predicates.add(builder.like(builder.lower(root.get("name")), "%" + request.getName().toLowerCase() + "%"));
+                List<String> terms = nameTerms(request);
+                Expression<String> name = builder.lower(root.get("name"));
+                if (terms == null) {
+                    predicates.add(builder.like(name, "%" + request.getName().toLowerCase() + "%"));
+                } else if (!terms.isEmpty()) {
+                    Predicate[] matches = terms.stream()
+                            .map(term -> builder.like(name, "%" + term + "%"))
+                            .toArray(Predicate[]::new);
+                    predicates.add(TERMS_ANY.equals(request.getTerms()) ? builder.or(matches) : builder.and(matches));
+                }
             }
             if (Objects.nonNull(request.getCategory())) {
                 predicates.add(builder.equal(root.get("category"), request.getCategory()));
             }
+            if (Objects.nonNull(request.getColor())) {
+                predicates.add(builder.equal(root.get("color"), request.getColor()));
+            }
             if (Objects.nonNull(request.getMinPrice())) {
                 predicates.add(builder.greaterThanOrEqualTo(root.get("price"), request.getMinPrice()));
             }
@@ -131,17 +464,14 @@ public class ProductService {
             if (Objects.nonNull(request.getStoreId())) {
                 predicates.add(builder.equal(root.get("store").get("id"), request.getStoreId()));
             }
+            if (Objects.nonNull(cursor)) {
+                predicates.add(sort.after(cursor, root, builder));
+            }
+            if (Objects.nonNull(sort)) {
+                query.orderBy(sort.orders(root, builder));
+            }
             return query.where(predicates.toArray(new Predicate[0])).getRestriction();
         };
-
-        Pageable pageable = PageRequest.of(request.getPage(), request.getLimit());
-        Page<Product> products = productRepository.findAll(specification, pageable);
-
-        List<ProductResponse> responses = products.getContent().stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
-
-        return new PageImpl<>(responses, pageable, products.getTotalElements());
     }
 
     @Transactional
@@ -185,6 +515,8 @@ public class ProductService {
             store.setRating(BigDecimal.valueOf(avgStoreRating));
             storeRepository.save(store);
         }
+        // every cached product of the store shows its rating, this one included
+        productCache.evictStore(product.getStore().getId());
 
         return toResponse(product);
     }
@@ -0,0 +1,125 @@
+package com.pretest.ecommerce.service;
+
+import com.pretest.ecommerce.dto.ProductResponse;
+import com.pretest.ecommerce.entity.Product;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The orders a product listing can be sorted and scrolled in. Each is a key plus the id as a
+ * tie-breaker, so the order is total and the next page can start right after the last row of
+ * the previous one ({@link #after}) instead of counting past an {@code OFFSET}. Every key is
+ * NOT NULL and has a matching {@code (key, id)}, {@code (store_id, key, id)} and
+ * {@code (category, key, id)} index, see {@code sql/migrations/003_product_listing.sql}.
+ * <p>
+ * A cursor is the sort, the key and the id of a row, base64url-encoded; clients treat it as opaque.
+ */
+public enum ProductSort {
+
+    ID("id", false, null, null),
+    PRICE("price", false, ProductResponse::getPrice, BigDecimal::new),
+    RATING("rating", true, ProductResponse::getRating, Double::valueOf),
+    SOLD_FOR("soldFor", true, ProductResponse::getSoldFor, Integer::valueOf),
+    NEWEST("createdAt", true, ProductResponse::getCreatedAt, LocalDateTime::parse);
+
+    private final String attribute;
+
+    private final boolean descending;
+
+    private final Function<ProductResponse, Comparable<?>> key;
+
+    private final Function<String, Comparable<?>> parser;
+
+    ProductSort(String attribute, boolean descending, Function<ProductResponse, Comparable<?>> key,
+            Function<String, Comparable<?>> parser) {
+        this.attribute = attribute;
+        this.descending = descending;
+        this.key = key;
+        this.parser = parser;
+    }
+
+    /**
+     * The sort named by the {@code sort} request parameter: {@code price} (cheapest first),
+     * {@code rating}, {@code soldFor} or {@code newest} (highest first); null means by id.
+     */
+    public static ProductSort of(String name) {
+        if (name == null || name.isEmpty()) {
+            return ID;
+        }
+        return switch (name) {
+            case "price" -> PRICE;
+            case "rating" -> RATING;
+            case "soldFor" -> SOLD_FOR;
+            case "newest" -> NEWEST;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown sort");
+        };
+    }
+
+    public List<Order> orders(Root<Product> root, CriteriaBuilder builder) {
+        Order byId = descending ? builder.desc(root.get("id")) : builder.asc(root.get("id"));
+        if (this == ID) {
+            return List.of(byId);
+        }
+        return List.of(descending ? builder.desc(root.get(attribute)) : builder.asc(root.get(attribute)), byId);
+    }
+
+    /**
+     * Rows after {@code cursor} in this order, as the row comparison {@code (key, id) > (v, i)}
+     * (mirrored when descending). PostgreSQL turns it into a single bound on the
+     * {@code (key, id)} index, so the scan starts at the cursor even inside a long run of equal
+     * keys, which {@code key >= v AND (key > v OR id > i)} would have to filter through.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Predicate after(Cursor cursor, Root<Product> root, CriteriaBuilder builder) {
+        Path<Long> id = root.get("id");
+        if (this == ID) {
+            return descending ? builder.lessThan(id, cursor.id()) : builder.greaterThan(id, cursor.id());
+        }
+        // typed as the key alone: Hibernate has no type for a row, and PostgreSQL compares it field by field
+        Class<Comparable> type = (Class<Comparable>) cursor.key().getClass();
+        Expression<Comparable> row = builder.function("row", type, root.get(attribute), id);
+        Expression<Comparable> last = builder.function("row", type, builder.literal(cursor.key()),
+                builder.literal(cursor.id()));
+        return descending ? builder.lessThan(row, last) : builder.greaterThan(row, last);
+    }
+
+    public String cursor(ProductResponse last) {
+        String value = this == ID ? "" : String.valueOf(key.apply(last));
+        String cursor = name() + "|" + value + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a cursor this sort produced. Throws 400 when it's malformed or from another sort.
+     */
+    public Cursor parse(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3 || !name().equals(parts[0])) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new Cursor(this == ID ? null : parser.apply(parts[1]), Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /**
+     * Where a page ended: the sort key and id of its last row.
+     */
+    public record Cursor(Comparable<?> key, Long id) {
+    }
+}
@@ -4,12 +4,12 @@ import com.pretest.ecommerce.dto.CreateStoreRequest;
 import com.pretest.ecommerce.dto.StoreResponse;
 import com.pretest.ecommerce.entity.Store;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.repository.RowEstimateRepository;
 import com.pretest.ecommerce.repository.StoreRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +21,8 @@ import com.pretest.ecommerce.entity.StoreFollowerKey;
 import com.pretest.ecommerce.repository.StoreFollowerRepository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,11 +31,20 @@ public class StoreService {
     @Autowired
     private StoreRepository storeRepository;
 
+    @Autowired
+    private RowEstimateRepository rowEstimateRepository;
+
     @Autowired
     private StoreFollowerRepository storeFollowerRepository;
 
     @Autowired
-    private com.pretest.ecommerce.service.AuthService authService;
+    private PresenceService presenceService;
+
+    @Autowired
+    private ProductIndex productIndex;
+
+    @Autowired
+    private ProductCache productCache;
 
     @Transactional
     public StoreResponse create(User user, CreateStoreRequest request) {
@@ -55,7 +66,7 @@ public class StoreService {
         store.setImageUrl(request.getImageUrl());
         Store savedStore = storeRepository.save(store);
 
-        return toResponse(savedStore, true);
+        return toResponse(savedStore, true, presenceService.isOnline(user.getId()));
     }
 
     @Transactional
@@ -74,40 +85,46 @@ public class StoreService {
         }
 
         Store savedStore = storeRepository.save(store);
-        return toResponse(savedStore, false);
+        if (request.getName() != null || request.getLocation() != null) {
+            // cached products carry the store's name and location
+            productCache.evictStore(savedStore.getId());
+        }
+        return toResponse(savedStore, false, presenceService.isOnline(user.getId()));
     }
 
+    /**
+     * A page of stores, with its total counted as {@code count} says.
+     */
     @Transactional(readOnly = true)
-    public Page<StoreResponse> findAll(int page, int limit) {
+    public Slice<StoreResponse> findAll(int page, int limit, CountMode count) {
 
         Pageable pageable = PageRequest.of(page, limit);
 
-        Page<Store> storesPage = storeRepository.findAll(pageable);
+        Slice<Store> storesPage = count.total(storeRepository.findAllBy(pageable), storeRepository::count,
+                () -> rowEstimateRepository.estimate("SELECT 1 FROM stores"));
 
-        List<StoreResponse> storeResponses = storesPage.getContent().stream()
-                .map(store -> toResponse(store, false))
-                .collect(Collectors.toList());
+        Set<UUID> online = presenceService.findOnline(storesPage.getContent().stream()
+                .map(store -> store.getUser().getId())
+                .toList());
 
-        return new PageImpl<>(storeResponses, pageable, storesPage.getTotalElements());
+        return storesPage.map(store -> toResponse(store, false, online.contains(store.getUser().getId())));
     }
 
     @Transactional(readOnly = true)
     public StoreResponse get(Long id) {
         Store store = storeRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Store not found"));
-        return toResponse(store, true);
+        return toResponse(store, true, presenceService.isOnline(store.getUser().getId()));
     }
 
     @Transactional(readOnly = true)
     public StoreResponse findByUser(User user) {
         Store store = storeRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Store not found"));
-        return toResponse(store, true);
+        return toResponse(store, true, presenceService.isOnline(store.getUser().getId()));
     }
 
-    private StoreResponse toResponse(Store store, boolean includeProducts) {
-        boolean isOnline = authService.isUserOnline(store.getUser().getId());
-
+    private StoreResponse toResponse(Store store, boolean includeProducts, boolean isOnline) {
         List<com.pretest.ecommerce.dto.ProductResponse> productResponses = null;
         if (includeProducts && store.getProducts() != null) {
             productResponses = store.getProducts().stream()
@@ -177,6 +194,10 @@ public class StoreService {
     public void delete(User user) {
         Store store = storeRepository.findByUserId(user.getId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Store not found"));
+        if (store.getProducts() != null) {
+            store.getProducts().forEach(product -> productIndex.changed(ProductIndex.document(product), null));
+        }
+        productCache.evictStore(store.getId());
         storeRepository.delete(store);
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.pretest.ecommerce.dto.TransactionDetailResponse;
 import com.pretest.ecommerce.dto.TransactionResponse;
 import com.pretest.ecommerce.entity.*;
 import com.pretest.ecommerce.repository.CartRepository;
+import com.pretest.ecommerce.repository.RowEstimateRepository;
 import com.pretest.ecommerce.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -18,10 +19,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import jakarta.persistence.criteria.Predicate;
 import java.util.Objects;
@@ -32,9 +35,15 @@ public class TransactionService {
         @Autowired
         private TransactionRepository transactionRepository;
 
+        @Autowired
+        private RowEstimateRepository rowEstimateRepository;
+
         @Autowired
         private CartRepository cartRepository;
 
+        @Autowired
+        private ProductCache productCache;
+
         @Transactional
         public List<TransactionResponse> checkout(UUID userId) {
                 Cart cart = cartRepository.findByUserId(userId)
@@ -108,6 +117,7 @@ public class TransactionService {
                 }
 
                 transactionRepository.saveAll(transactions);
+                productCache.evict(selectedItems.stream().map(item -> item.getProduct().getId()).toList());
 
                 cart.getCartItems().removeAll(selectedItems);
                 cartRepository.save(cart);
@@ -145,11 +155,16 @@ public class TransactionService {
                         .build();
         }
 
+        /**
+         * A page of the user's transactions, optionally of one status, with its total counted as
+         * {@code count} says.
+         */
         @Transactional(readOnly = true)
-        public Page<TransactionResponse> getUserTransactions(User user, int page, int limit, String status) {
+        public Slice<TransactionResponse> getUserTransactions(UUID userId, int page, int limit, String status,
+                        CountMode count) {
                 Specification<Transaction> specification = (root, query, builder) -> {
                         List<Predicate> predicates = new ArrayList<>();
-                        predicates.add(builder.equal(root.get("user").get("id"), user.getId()));
+                        predicates.add(builder.equal(root.get("user").get("id"), userId));
 
                         if (Objects.nonNull(status) && !status.isEmpty()) {
                                 predicates.add(builder.equal(root.get("status"), status));
@@ -159,22 +174,30 @@ public class TransactionService {
                 };
 
                 Pageable pageable = PageRequest.of(page, limit);
-                Page<Transaction> transactions = transactionRepository.findAll(specification, pageable);
+                Window<Transaction> window = transactionRepository.findBy(specification,
+                                query -> query.limit(limit).scroll(ScrollPosition.offset(pageable.getOffset())));
 
-                List<TransactionResponse> responses = transactions.getContent().stream()
-                        .map(this::toResponse)
-                        .collect(Collectors.toList());
+                return count.total(new SliceImpl<>(window.getContent(), pageable, window.hasNext()),
+                                () -> transactionRepository.count(specification),
+                                () -> estimate(userId, status))
+                                .map(this::toResponse);
+        }
 
-                return new PageImpl<>(responses, pageable, transactions.getTotalElements());
+        private long estimate(UUID userId, String status) {
+                if (Objects.nonNull(status) && !status.isEmpty()) {
+                        return rowEstimateRepository.estimate(
+                                        "SELECT 1 FROM transactions t WHERE t.user_id = ? AND t.status = ?", userId, status);
+                }
+                return rowEstimateRepository.estimate("SELECT 1 FROM transactions t WHERE t.user_id = ?", userId);
         }
 
         @Transactional(readOnly = true)
-        public TransactionResponse getTransactionByInvoice(User user, String invoiceNumber) {
+        public TransactionResponse getTransactionByInvoice(UUID userId, String invoiceNumber) {
                 Transaction transaction = transactionRepository.findByInvoiceNumber(invoiceNumber)
                         .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                                 "Transaction not found"));
 
-                if (!transaction.getUser().getId().equals(user.getId())) {
+                if (!transaction.getUser().getId().equals(userId)) {
                         throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Transaction does not belong to user");
                 }
 
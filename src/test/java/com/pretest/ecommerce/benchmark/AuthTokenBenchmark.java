@@ -0,0 +1,86 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.pretest.ecommerce.security.AuthPrincipal;
+import com.pretest.ecommerce.security.TokenCache;
+import com.pretest.ecommerce.security.TokenDigest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of turning a bearer token into a principal, CPU part only (the Redis
+ * {@code hasKey} and {@code findById} round trips skipped on a cache hit are not included).
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main AuthTokenBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthTokenBenchmark {
+
+    private static final String SECRET = "PreTestFreelanceBackendTDI";
+
+    private String token;
+
+    private JWTVerifier sharedVerifier;
+
+    private TokenCache tokenCache;
+
+    @Setup
+    public void setup() {
+        long now = System.currentTimeMillis();
+        Algorithm algorithm = Algorithm.HMAC256(SECRET);
+        token = JWT.create()
+                .withSubject("user@example.com")
+                .withClaim("role", "USER")
+                .withClaim("userId", UUID.randomUUID().toString())
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + 86400000L))
+                .sign(algorithm);
+        sharedVerifier = JWT.require(algorithm).build();
+
+        tokenCache = new TokenCache();
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 100000L);
+        ReflectionTestUtils.setField(tokenCache, "ttl", 60000L);
+        ReflectionTestUtils.invokeMethod(tokenCache, "init");
+        tokenCache.put(TokenDigest.of(token), toPrincipal(sharedVerifier.verify(token)));
+    }
+
+    @Benchmark
+    public AuthPrincipal verifyPerRequest() {
+        Algorithm algorithm = Algorithm.HMAC256(SECRET);
+        JWTVerifier verifier = JWT.require(algorithm).build();
+        return toPrincipal(verifier.verify(token));
+    }
+
+    @Benchmark
+    public AuthPrincipal verifyWithSharedVerifier() {
+        return toPrincipal(sharedVerifier.verify(token));
+    }
+
+    @Benchmark
+    public AuthPrincipal cachedLookup() {
+        return tokenCache.get(TokenDigest.of(token));
+    }
+
+    private static AuthPrincipal toPrincipal(DecodedJWT decodedJWT) {
+        return AuthPrincipal.builder()
+                .userId(UUID.fromString(decodedJWT.getClaim("userId").asString()))
+                .email(decodedJWT.getSubject())
+                .role(decodedJWT.getClaim("role").asString())
+                .issuedAt(decodedJWT.getIssuedAtAsInstant())
+                .expiresAt(decodedJWT.getExpiresAtAsInstant())
+                .build();
+    }
+}
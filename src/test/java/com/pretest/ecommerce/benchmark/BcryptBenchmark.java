@@ -0,0 +1,53 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.pretest.ecommerce.security.Bcrypt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Bcrypt#hashpw} and {@link Bcrypt#checkpw} per work factor, used to pick
+ * {@code noptzy.password.hasher.cost} / {@code target-latency} for a node.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main BcryptBenchmark"}, add {@code -p cost=10,12}
+ * to the args for a subset.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BcryptBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14"})
+    private int cost;
+
+    private String salt;
+
+    private String hashed;
+
+    @Setup
+    public void setup() {
+        salt = Bcrypt.gensalt(cost);
+        hashed = Bcrypt.hashpw(PASSWORD, salt);
+    }
+
+    @Benchmark
+    public String hashpw() {
+        return Bcrypt.hashpw(PASSWORD, salt);
+    }
+
+    @Benchmark
+    public boolean checkpw() {
+        return Bcrypt.checkpw(PASSWORD, hashed);
+    }
+
+    @Benchmark
+    public String gensalt() {
+        return Bcrypt.gensalt(cost);
+    }
+}
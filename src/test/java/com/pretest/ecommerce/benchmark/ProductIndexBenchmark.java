@@ -0,0 +1,167 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretest.ecommerce.dto.ProductDocument;
+import com.pretest.ecommerce.dto.SearchProductRequest;
+import com.pretest.ecommerce.repository.ProductRepository;
+import com.pretest.ecommerce.service.ProductIndex;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+/**
+ * Memory and latency of {@link ProductIndex} over a generated catalog, shaped like the one
+ * {@code ProductSearchBenchmark} seeds: names "noun adjective brandN" from 50 nouns, 20 adjectives
+ * and 5,000 brands, 8 categories, 10 colors, 1,000 stores, prices 1,000 to 5,001,000. Builds the
+ * index through its real load path against a stubbed repository, prints the retained heap, then
+ * the median latency of each search (ids of the first page plus the total), of the same searches
+ * with category, price and store facets counted, and of an update.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-Xmx3g -cp %classpath com.pretest.ecommerce.benchmark.ProductIndexBenchmark 10000000"}
+ * (products).
+ */
+public class ProductIndexBenchmark {
+
+    private static final String[] NOUNS = {"kemeja", "celana", "sepatu", "tas", "jaket", "laptop", "ponsel",
+            "kamera", "jam", "topi", "kaos", "rok", "sandal", "dompet", "kacamata", "headset", "monitor", "keyboard",
+            "mouse", "printer", "lemari", "meja", "kursi", "lampu", "kasur", "bantal", "selimut", "panci", "wajan",
+            "piring", "gelas", "sendok", "botol", "blender", "kipas", "setrika", "sabun", "sampo", "parfum",
+            "lipstik", "bola", "raket", "sepeda", "helm", "buku", "pensil", "mainan", "boneka", "puzzle", "gitar"};
+
+    private static final String[] ADJECTIVES = {"merah", "biru", "hitam", "putih", "premium", "murah", "original",
+            "import", "lokal", "portable", "mini", "jumbo", "wireless", "anak", "pria", "wanita", "klasik", "modern",
+            "vintage", "sport"};
+
+    private static final String[] COLORS = {"katun", "kulit", "plastik", "kayu", "logam", "kaca", "karet", "wol",
+            "sutra", "bambu"};
+
+    private static final String[] CATEGORIES = {"Fashion", "Elektronik", "Rumah Tangga", "Kecantikan", "Olahraga",
+            "Hobi", "Dapur", "Otomotif"};
+
+    private static final long MEASURE_NANOS = 2000000000L;
+
+    public static void main(String[] args) throws Exception {
+        long products = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+
+        ProductRepository repository = Mockito.mock(ProductRepository.class);
+        Random random = new Random(42);
+        Mockito.when(repository.findDocuments(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            int size = invocation.getArgument(1, Pageable.class).getPageSize();
+            List<ProductDocument> batch = new ArrayList<>(size);
+            for (long id = after + 1; id <= Math.min(products, after + size); id++) {
+                batch.add(document(id, random));
+            }
+            return batch;
+        });
+
+        ProductIndex index = new ProductIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "batchSize", 10000);
+        ReflectionTestUtils.setField(index, "productRepository", repository);
+        ReflectionTestUtils.setField(index, "redisTemplate", Mockito.mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(index, "objectMapper", new ObjectMapper());
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        index.rebuild();
+        long buildMillis = (System.nanoTime() - start) / 1000000;
+        Mockito.reset(repository);
+        long heap = usedHeap() - heapBefore;
+        System.out.printf("%,d products indexed in %,d ms, %,d MB retained (%.1f bytes per product)%n",
+                products, buildMillis, heap / (1024 * 1024), (double) heap / products);
+
+        System.out.printf("%-38s %12s %12s%n", "search", "matches", "median us");
+        report(index, "all products", SearchProductRequest.builder().build());
+        report(index, "all products, page 10,000", SearchProductRequest.builder().page(10000).build());
+        report(index, "category", SearchProductRequest.builder().category("Fashion").build());
+        report(index, "store", SearchProductRequest.builder().storeId(7L).build());
+        report(index, "price 100,000-250,000", SearchProductRequest.builder()
+                .minPrice(new BigDecimal("100000")).maxPrice(new BigDecimal("250000")).build());
+        report(index, "name kemeja", SearchProductRequest.builder().name("kemeja").build());
+        report(index, "name kem (substring)", SearchProductRequest.builder().name("kem").build());
+        report(index, "name brand123 (substring)", SearchProductRequest.builder().name("brand123").build());
+        report(index, "name e (most words)", SearchProductRequest.builder().name("e").build());
+        report(index, "name zzzz", SearchProductRequest.builder().name("zzzz").build());
+        report(index, "terms all kemeja merah", SearchProductRequest.builder().name("kemeja merah").terms("all").build());
+        report(index, "terms any kemeja celana", SearchProductRequest.builder().name("kemeja celana").terms("any").build());
+        report(index, "kemeja + Fashion + kulit + price", SearchProductRequest.builder().name("kemeja")
+                .category("Fashion").color("kulit").minPrice(new BigDecimal("1000000")).build());
+        report(index, "store + category", SearchProductRequest.builder().storeId(7L).category("Hobi").build());
+
+        System.out.printf("%-38s %12s %12s%n", "facets (category, price, store)", "matches", "median us");
+        reportFacets(index, "all products", SearchProductRequest.builder().build());
+        reportFacets(index, "category", SearchProductRequest.builder().category("Fashion").build());
+        reportFacets(index, "name kemeja", SearchProductRequest.builder().name("kemeja").build());
+        reportFacets(index, "name brand123 (substring)", SearchProductRequest.builder().name("brand123").build());
+        reportFacets(index, "kemeja + Fashion + store + price", SearchProductRequest.builder().name("kemeja")
+                .category("Fashion").storeId(7L).minPrice(new BigDecimal("1000000")).build());
+
+        Random updates = new Random(7);
+        double[] timings = new double[10000];
+        for (int i = 0; i < timings.length; i++) {
+            long id = 1 + updates.nextLong(products);
+            ProductDocument previous = document(id, new Random(id));
+            ProductDocument current = document(id, new Random(id + 1));
+            long updateStart = System.nanoTime();
+            index.changed(previous, current);
+            timings[i] = (System.nanoTime() - updateStart) / 1e3;
+        }
+        Arrays.sort(timings);
+        System.out.printf("%-38s %12s %12.1f%n", "update (apply + broadcast)", "", timings[timings.length / 2]);
+    }
+
+    private static ProductDocument document(long id, Random random) {
+        String noun = NOUNS[random.nextInt(NOUNS.length)];
+        String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+        return new ProductDocument(id, noun + " " + adjective + " brand" + random.nextInt(5000),
+                CATEGORIES[random.nextInt(CATEGORIES.length)], COLORS[random.nextInt(COLORS.length)],
+                BigDecimal.valueOf(100000 + random.nextLong(500000000), 2), 1 + (long) random.nextInt(1000));
+    }
+
+    private static void report(ProductIndex index, String label, SearchProductRequest request) {
+        Pageable pageable = PageRequest.of(request.getPage(), request.getLimit());
+        long matches = index.search(request, null, pageable).getTotalElements();
+        System.out.printf("%-38s %,12d %12.1f%n", label, matches, median(() -> index.search(request, null, pageable)));
+    }
+
+    private static void reportFacets(ProductIndex index, String label, SearchProductRequest request) {
+        Pageable pageable = PageRequest.of(request.getPage(), request.getLimit());
+        Set<String> facets = Set.of(ProductIndex.FACET_CATEGORY, ProductIndex.FACET_PRICE, ProductIndex.FACET_STORE);
+        long matches = index.facets(request, facets, pageable).ids().getTotalElements();
+        System.out.printf("%-38s %,12d %12.1f%n", label, matches, median(() -> index.facets(request, facets, pageable)));
+    }
+
+    private static double median(Runnable search) {
+        List<Double> timings = new ArrayList<>();
+        long end = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < end || timings.size() < 5) {
+            long start = System.nanoTime();
+            search.run();
+            timings.add((System.nanoTime() - start) / 1e3);
+        }
+        timings.sort(null);
+        return timings.get(timings.size() / 2);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
@@ -0,0 +1,148 @@
+package com.pretest.ecommerce.benchmark;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Deep pages of a sorted product listing, {@code OFFSET} against keyset, on the catalog
+ * {@code ProductSearchBenchmark} seeds into {@code db_search_bench} (run that first). Applies
+ * {@code sql/migrations/003_product_listing.sql} (run it from the project root), then for each
+ * sort, unfiltered and filtered by store, category and both, prints the median latency of the
+ * page at several depths both ways, plus the count query page mode also runs.
+ * Then compares, for a few filters, the exact count with the planner's estimate.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.pretest.ecommerce.benchmark.ProductListingBenchmark"}
+ * (connection from {@code -Durl}, {@code -Duser}, {@code -Dpassword}).
+ */
+public class ProductListingBenchmark {
+
+    private static final String DATABASE = "db_search_bench";
+
+    private static final int RUNS = 7;
+
+    private static final int LIMIT = 10;
+
+    private static final List<Integer> DEPTHS = List.of(0, 1000, 10000, 100000, 1000000);
+
+    private record Sort(String name, String column, String direction) {
+    }
+
+    private static final List<Sort> SORTS = List.of(new Sort("price", "price", "ASC"),
+            new Sort("rating", "rating", "DESC"), new Sort("soldFor", "sold_for", "DESC"),
+            new Sort("newest", "created_at", "DESC"));
+
+    private record Listing(String name, String where) {
+    }
+
+    private static final List<Listing> LISTINGS = List.of(new Listing("-", "TRUE"),
+            new Listing("store", "store_id = 7"), new Listing("category", "category = 'Hobi'"),
+            new Listing("both", "store_id = 7 AND category = 'Hobi'"));
+
+    // everything, a store, a ~2% name, a category, a price range, name and category together
+    private static final List<String> FILTERS = List.of("TRUE", "store_id = 7", "lower(name) LIKE '%kemeja%'",
+            "category = 'Hobi'", "price BETWEEN 100000 AND 250000", "lower(name) LIKE '%kemeja%' AND category = 'Hobi'");
+
+    public static void main(String[] args) throws Exception {
+        String server = System.getProperty("url", "jdbc:postgresql://localhost:5432/");
+        String user = System.getProperty("user", "postgres");
+        String password = System.getProperty("password", "");
+
+        try (Connection connection = DriverManager.getConnection(server + DATABASE, user, password)) {
+            long start = System.nanoTime();
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource("sql/migrations/003_product_listing.sql"));
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM ANALYZE products");
+                statement.execute("SET plan_cache_mode = force_custom_plan");
+            }
+            System.out.printf("listing indexes ready in %.0f s%n", (System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%-8s %-8s %10s %10s %10s %10s%n", "sort", "filter", "depth", "offset ms", "keyset ms",
+                    "count ms");
+            for (Sort sort : SORTS) {
+                for (Listing listing : LISTINGS) {
+                    report(connection, sort, listing);
+                }
+            }
+
+            System.out.printf("%n%-54s %10s %10s %10s %10s%n", "filter", "count", "count ms", "estimate",
+                    "estimate ms");
+            for (String filter : FILTERS) {
+                String count = "SELECT count(*) FROM products WHERE " + filter;
+                String estimate = "EXPLAIN (FORMAT JSON) SELECT 1 FROM products WHERE " + filter;
+                System.out.printf("%-54s %,10d %10.1f %,10d %10.1f%n", filter, value(connection, count),
+                        median(connection, count), value(connection, estimate), median(connection, estimate));
+            }
+        }
+    }
+
+    private static void report(Connection connection, Sort sort, Listing listing) throws SQLException {
+        String where = listing.where();
+        String order = " ORDER BY %1$s %2$s, id %2$s".formatted(sort.column(), sort.direction());
+        String compare = "ASC".equals(sort.direction()) ? ">" : "<";
+        String offsetPage = "SELECT * FROM products WHERE " + where + order + " OFFSET ? LIMIT " + LIMIT;
+        String keysetPage = "SELECT * FROM products WHERE " + where + " AND (%s, id) %s (?, ?)"
+                .formatted(sort.column(), compare) + order + " LIMIT " + LIMIT;
+        double count = median(connection, "SELECT count(*) FROM products WHERE " + where);
+
+        for (int depth : DEPTHS) {
+            Object[] last = null;
+            if (depth > 0) {
+                // the row a client paging by cursor would have reached
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT %s, id FROM products WHERE %s%s OFFSET %d LIMIT 1".formatted(sort.column(), where, order, depth - 1));
+                        ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        continue;
+                    }
+                    last = new Object[] {resultSet.getObject(1), resultSet.getLong(2)};
+                }
+            }
+            double keyset = last == null
+                    ? median(connection, "SELECT * FROM products WHERE " + where + order + " LIMIT " + LIMIT)
+                    : median(connection, keysetPage, last);
+            System.out.printf("%-8s %-8s %,10d %10.1f %10.1f %10.1f%n", sort.name(), listing.name(),
+                    depth, median(connection, offsetPage, depth), keyset, count);
+        }
+    }
+
+    private static long value(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            String value = resultSet.getString(1);
+            // a plan is JSON: the top node's estimated rows
+            return value.startsWith("[") ? Long.parseLong(value.replaceAll("(?s).*?\"Plan Rows\": (\\d+).*", "$1"))
+                    : Long.parseLong(value);
+        }
+    }
+
+    private static double median(Connection connection, String sql, Object... parameters) throws SQLException {
+        double[] timings = new double[RUNS];
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        resultSet.getObject(1);
+                    }
+                }
+                timings[i] = (System.nanoTime() - start) / 1e6;
+            }
+        }
+        Arrays.sort(timings);
+        return timings[RUNS / 2];
+    }
+}
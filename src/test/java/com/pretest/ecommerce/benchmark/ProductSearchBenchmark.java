@@ -0,0 +1,197 @@
+package com.pretest.ecommerce.benchmark;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Product search on a generated catalog: the default substring path ({@code lower(name) LIKE}),
+ * the {@code fulltext} path and the {@code fuzzy} path, each as the page query plus the count
+ * query the API runs. Seeds {@code db_search_bench} on first use (or when the row count differs),
+ * applies {@code sql/migrations/001_product_search_vector.sql} and
+ * {@code 002_product_name_trigram.sql} (run it from the project root), then prints the median
+ * latency per term and mode. Like the application does for name searches, it forces custom plans:
+ * a generic plan can't see the LIKE pattern. Queries slower than a second are timed once.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.pretest.ecommerce.benchmark.ProductSearchBenchmark 5000000"}
+ * (rows; connection from {@code -Durl}, {@code -Duser}, {@code -Dpassword}).
+ */
+public class ProductSearchBenchmark {
+
+    private static final String DATABASE = "db_search_bench";
+
+    private static final int RUNS = 7;
+
+    private static final double FUZZY_THRESHOLD = 0.5;
+
+    private static final double SLOW_MS = 1000;
+
+    // an ~2% noun, the same misspelled, a ~0.02% brand, two words together, a category word, no match
+    private static final List<String> TERMS = List.of("kemeja", "kemaja", "brand123", "kemeja brand123",
+            "elektronik", "zzzz");
+
+    private static final String LIKE_PAGE = "SELECT * FROM products p WHERE lower(p.name) LIKE ? OFFSET 0 ROWS FETCH FIRST 10 ROWS ONLY";
+
+    private static final String LIKE_COUNT = "SELECT count(p.id) FROM products p WHERE lower(p.name) LIKE ?";
+
+    private static final String FULLTEXT_PAGE = """
+            SELECT p.* FROM products p, websearch_to_tsquery('simple', ?) q WHERE p.search_vector @@ q
+            ORDER BY ts_rank(p.search_vector, q) DESC, p.id LIMIT 10""";
+
+    private static final String FULLTEXT_COUNT = """
+            SELECT count(*) FROM products p, websearch_to_tsquery('simple', ?) q WHERE p.search_vector @@ q""";
+
+    private static final String FUZZY_PAGE = """
+            SELECT p.* FROM products p WHERE lower(?) <% lower(p.name)
+            ORDER BY word_similarity(lower(?), lower(p.name)) DESC, p.id LIMIT 10""";
+
+    private static final String FUZZY_COUNT = "SELECT count(*) FROM products p WHERE lower(?) <% lower(p.name)";
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 5000000L;
+        String server = System.getProperty("url", "jdbc:postgresql://localhost:5432/");
+        String user = System.getProperty("user", "postgres");
+        String password = System.getProperty("password", "");
+
+        try (Connection admin = DriverManager.getConnection(server + "postgres", user, password);
+                Statement statement = admin.createStatement();
+                ResultSet exists = statement.executeQuery("SELECT 1 FROM pg_database WHERE datname = '" + DATABASE + "'")) {
+            if (!exists.next()) {
+                statement.execute("CREATE DATABASE " + DATABASE);
+            }
+        }
+
+        try (Connection connection = DriverManager.getConnection(server + DATABASE, user, password)) {
+            seed(connection, rows);
+            long start = System.nanoTime();
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource("sql/migrations/001_product_search_vector.sql"));
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource("sql/migrations/002_product_name_trigram.sql"));
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM ANALYZE products");
+                statement.execute("SET pg_trgm.word_similarity_threshold = " + FUZZY_THRESHOLD);
+                statement.execute("SET plan_cache_mode = force_custom_plan");
+            }
+            System.out.printf("search indexes ready in %.0f s%n", (System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%-18s %-9s %10s %10s %10s%n", "term", "mode", "matches", "page ms", "count ms");
+            for (String term : TERMS) {
+                String pattern = "%" + term + "%";
+                report(connection, term, "like", LIKE_PAGE, LIKE_COUNT, pattern);
+                report(connection, term, "fulltext", FULLTEXT_PAGE, FULLTEXT_COUNT, term);
+                report(connection, term, "fuzzy", FUZZY_PAGE, FUZZY_COUNT, term);
+            }
+        }
+    }
+
+    private static void report(Connection connection, String term, String mode, String page, String count,
+            String parameter) throws SQLException {
+        System.out.printf("%-18s %-9s %,10d %10.1f %10.1f%n", term, mode, count(connection, count, parameter),
+                median(connection, page, parameter), median(connection, count, parameter));
+    }
+
+    private static void seed(Connection connection, long rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet existing = statement.executeQuery("SELECT count(*) FROM products")) {
+                existing.next();
+                if (existing.getLong(1) == rows) {
+                    return;
+                }
+            } catch (SQLException e) {
+                // no table yet
+            }
+
+            long start = System.nanoTime();
+            statement.execute("DROP TABLE IF EXISTS products");
+            statement.execute("""
+                    CREATE TABLE products (
+                        id BIGSERIAL PRIMARY KEY,
+                        store_id BIGINT NOT NULL,
+                        name VARCHAR(255) NOT NULL,
+                        description TEXT,
+                        price DECIMAL(19, 2) NOT NULL,
+                        stock INT NOT NULL DEFAULT 0,
+                        category VARCHAR(100),
+                        color VARCHAR(50),
+                        sold_for INT DEFAULT 0,
+                        rating DOUBLE PRECISION DEFAULT 0.0,
+                        image_url TEXT,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)""");
+            statement.execute("""
+                    INSERT INTO products (store_id, name, description, price, stock, category, color, sold_for, rating, created_at)
+                    SELECT 1 + (random() * 999)::int,
+                           n.noun || ' ' || a.adjective || ' brand' || (random() * 4999)::int,
+                           'Produk ' || a.adjective || ' untuk ' || n.noun || ', bahan ' || m.material || ' kualitas terbaik',
+                           round((1000 + random() * 5000000)::numeric, 2),
+                           (random() * 500)::int,
+                           c.category,
+                           m.material,
+                           (random() * 10000)::int,
+                           round((1 + random() * 4)::numeric, 1),
+                           now() - random() * interval '730 days'
+                    FROM generate_series(1, %d) i,
+                         LATERAL (SELECT (ARRAY['kemeja','celana','sepatu','tas','jaket','laptop','ponsel','kamera',
+                             'jam','topi','kaos','rok','sandal','dompet','kacamata','headset','monitor','keyboard',
+                             'mouse','printer','lemari','meja','kursi','lampu','kasur','bantal','selimut','panci',
+                             'wajan','piring','gelas','sendok','botol','blender','kipas','setrika','sabun','sampo',
+                             'parfum','lipstik','bola','raket','sepeda','helm','buku','pensil','mainan','boneka',
+                             'puzzle','gitar'])[1 + (random() * 49 + i * 0)::int] AS noun) n,
+                         LATERAL (SELECT (ARRAY['merah','biru','hitam','putih','premium','murah','original',
+                             'import','lokal','portable','mini','jumbo','wireless','anak','pria','wanita','klasik',
+                             'modern','vintage','sport'])[1 + (random() * 19 + i * 0)::int] AS adjective) a,
+                         LATERAL (SELECT (ARRAY['katun','kulit','plastik','kayu','logam','kaca','karet','wol',
+                             'sutra','bambu'])[1 + (random() * 9 + i * 0)::int] AS material) m,
+                         LATERAL (SELECT (ARRAY['Fashion','Elektronik','Rumah Tangga','Kecantikan','Olahraga',
+                             'Hobi','Dapur','Otomotif'])[1 + (random() * 7 + i * 0)::int] AS category) c
+                    """.formatted(rows));
+            System.out.printf("seeded %,d rows in %.0f s%n", rows, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, String parameter) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 1; i <= sql.chars().filter(c -> c == '?').count(); i++) {
+            statement.setString(i, parameter);
+        }
+        return statement;
+    }
+
+    private static long count(Connection connection, String sql, String parameter) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, sql, parameter)) {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private static double median(Connection connection, String sql, String parameter) throws SQLException {
+        double[] timings = new double[RUNS];
+        int runs = RUNS;
+        try (PreparedStatement statement = prepare(connection, sql, parameter)) {
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        resultSet.getLong(1);
+                    }
+                }
+                timings[i] = (System.nanoTime() - start) / 1e6;
+                if (timings[i] > SLOW_MS) {
+                    runs = i + 1;
+                }
+            }
+        }
+        Arrays.sort(timings, 0, runs);
+        return timings[runs / 2];
+    }
+}
@@ -0,0 +1,150 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.pretest.ecommerce.security.AuthenticationFilter;
+import com.pretest.ecommerce.security.RateLimitFilter;
+import com.pretest.ecommerce.security.TokenCache;
+import com.pretest.ecommerce.security.TokenDenylist;
+import com.pretest.ecommerce.security.TokenStore;
+import com.pretest.ecommerce.security.TokenVerifier;
+import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.service.PresenceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@code /api/*} filter chain per request, for a valid, a forged and no bearer token,
+ * with the rate limiter in front of authentication ({@code limiterFirst}, the registered order)
+ * or behind it ({@code authFirst}), and with the caller's bucket open or already exhausted.
+ * <p>
+ * Auth runs in stateless mode, so a forged token costs a signature check. Redis is stubbed out,
+ * which makes {@code authFirst} look cheaper than it is: there, every token missing from the
+ * local cache also costs a registry round trip, including on requests about to be rejected.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main RateLimitFilterBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final String SECRET = "PreTestFreelanceBackendTDI";
+
+    @Param({"valid", "forged", "missing"})
+    public String token;
+
+    @Param({"limiterFirst", "authFirst"})
+    public String order;
+
+    @Param({"open", "exhausted"})
+    public String bucket;
+
+    private FilterChain chain;
+
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() throws Exception {
+        long now = System.currentTimeMillis();
+        String validToken = JWT.create()
+                .withSubject("user@example.com")
+                .withClaim("role", "USER")
+                .withClaim("userId", UUID.randomUUID().toString())
+                .withClaim("typ", "access")
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + 86400000L))
+                .withJWTId(UUID.randomUUID().toString())
+                .sign(Algorithm.HMAC256(SECRET));
+        String forgedToken = validToken.substring(0, validToken.lastIndexOf('.') + 1)
+                + "c2lnbmF0dXJlLW1hZGUtdXAtYnktdGhlLWNhbGxlcg";
+
+        TokenCache tokenCache = new TokenCache();
+        ReflectionTestUtils.setField(tokenCache, "maxSize", 100000L);
+        ReflectionTestUtils.setField(tokenCache, "ttl", 60000L);
+        ReflectionTestUtils.invokeMethod(tokenCache, "init");
+
+        PresenceService presenceService = new PresenceService();
+        ReflectionTestUtils.setField(presenceService, "writeInterval", 60000L);
+        ReflectionTestUtils.invokeMethod(presenceService, "init");
+
+        TokenVerifier tokenVerifier = new TokenVerifier();
+        ReflectionTestUtils.setField(tokenVerifier, "secretKey", SECRET);
+        ReflectionTestUtils.invokeMethod(tokenVerifier, "init");
+
+        AuthService authService = new AuthService();
+        ReflectionTestUtils.setField(authService, "tokenVerifier", tokenVerifier);
+        ReflectionTestUtils.setField(authService, "stateless", true);
+        ReflectionTestUtils.setField(authService, "tokenCache", tokenCache);
+        ReflectionTestUtils.setField(authService, "tokenDenylist", new TokenDenylist());
+        ReflectionTestUtils.setField(authService, "presenceService", presenceService);
+        ReflectionTestUtils.setField(authService, "tokenStore", new TokenStore() {
+            @Override
+            public boolean exists(String jwt) {
+                return jwt.equals(validToken);
+            }
+        });
+
+        AuthenticationFilter authenticationFilter = new AuthenticationFilter();
+        ReflectionTestUtils.setField(authenticationFilter, "authService", authService);
+
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+                "noptzy.rate-limit.policies.default.capacity", "open".equals(bucket) ? 1000000000L : 1L,
+                "noptzy.rate-limit.policies.default.period", 86400000L)));
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("tokenCache", tokenCache,
+                "tokenVerifier", tokenVerifier));
+        RateLimitFilter rateLimitFilter = new RateLimitFilter();
+        ReflectionTestUtils.setField(rateLimitFilter, "mode", "local");
+        ReflectionTestUtils.setField(rateLimitFilter, "maxBuckets", 100000L);
+        ReflectionTestUtils.setField(rateLimitFilter, "idleTtl", 300000L);
+        ReflectionTestUtils.setField(rateLimitFilter, "policyFile", "");
+        ReflectionTestUtils.setField(rateLimitFilter, "environment", environment);
+        ReflectionTestUtils.setField(rateLimitFilter, "meterRegistry", beans.getBeanProvider(MeterRegistry.class));
+        ReflectionTestUtils.setField(rateLimitFilter, "tokenCache", beans.getBeanProvider(TokenCache.class));
+        ReflectionTestUtils.setField(rateLimitFilter, "tokenVerifier", beans.getBeanProvider(TokenVerifier.class));
+        ReflectionTestUtils.invokeMethod(rateLimitFilter, "init");
+
+        Filter first = "limiterFirst".equals(order) ? rateLimitFilter : authenticationFilter;
+        Filter second = "limiterFirst".equals(order) ? authenticationFilter : rateLimitFilter;
+        FilterChain end = (req, res) -> {
+        };
+        FilterChain tail = (req, res) -> second.doFilter(req, res, end);
+        chain = (req, res) -> first.doFilter(req, res, tail);
+
+        request = new MockHttpServletRequest("GET", "/api/stores/products");
+        request.setRemoteAddr("203.0.113.7");
+        if ("valid".equals(token)) {
+            request.addHeader("Authorization", "Bearer " + validToken);
+        } else if ("forged".equals(token)) {
+            request.addHeader("Authorization", "Bearer " + forgedToken);
+        }
+
+        // first request verifies the valid token and, for "exhausted", spends the only token
+        chain.doFilter(request, new MockHttpServletResponse());
+    }
+
+    @Benchmark
+    public int filterChain() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        chain.doFilter(request, response);
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,60 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.pretest.ecommerce.security.RateLimitFilter;
+import com.pretest.ecommerce.security.TokenCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+/**
+ * Soak run for {@link RateLimitFilter}: pushes millions of requests, each from a new IP, and
+ * prints the live heap (after GC), bucket count and evictions along the way. Heap should level
+ * off once {@code max-buckets} is reached instead of growing with the key count.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-Xmx512m -cp %classpath com.pretest.ecommerce.benchmark.RateLimitFilterSoak 5000000 100000"}
+ * (unique keys, max buckets).
+ */
+public class RateLimitFilterSoak {
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        long maxBuckets = args.length > 1 ? Long.parseLong(args[1]) : 100000L;
+        int reportEvery = Math.max(1, keys / 10);
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        RateLimitFilter filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "maxBuckets", maxBuckets);
+        ReflectionTestUtils.setField(filter, "idleTtl", 300000L);
+        ReflectionTestUtils.setField(filter, "policyFile", "");
+        ReflectionTestUtils.setField(filter, "environment", new StandardEnvironment());
+        ReflectionTestUtils.setField(filter, "meterRegistry",
+                new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+        ReflectionTestUtils.setField(filter, "tokenCache",
+                new StaticListableBeanFactory().getBeanProvider(TokenCache.class));
+        ReflectionTestUtils.invokeMethod(filter, "init");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        System.out.printf("%12s %12s %12s %12s%n", "keys", "heap MB", "buckets", "evictions");
+        for (int i = 1; i <= keys; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stores");
+            request.setRemoteAddr((i >>> 24 & 255) + "." + (i >>> 16 & 255) + "." + (i >>> 8 & 255) + "." + (i & 255));
+            filter.doFilter(request, response, (req, res) -> {
+            });
+
+            if (i % reportEvery == 0) {
+                System.gc();
+                long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+                System.out.printf("%,12d %12d %,12.0f %,12.0f%n", i, heap / (1024 * 1024),
+                        registry.get("cache.size").tag("cache", "rate-limit-buckets").gauge().value(),
+                        registry.get("cache.evictions").tag("cache", "rate-limit-buckets").functionCounter().count());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.pretest.ecommerce.security.TokenDigest;
+import com.pretest.ecommerce.security.TokenStore;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis cost of issuing and rotating a token pair: the {@link TokenStore} scripts against the
+ * same writes sent as separate commands. Each iteration works on a fresh user, whose keys are
+ * deleted afterwards, so the session index doesn't grow from one iteration to the next. Needs a
+ * Redis on localhost:6379.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main TokenIssueBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenIssueBenchmark {
+
+    private static final long ACCESS_TTL = 60000L;
+
+    private static final long REFRESH_TTL = 120000L;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate redisTemplate;
+
+    private TokenStore tokenStore;
+
+    private String userId;
+
+    private String sequentialRefreshToken;
+
+    private String scriptRefreshToken;
+
+    @Setup
+    public void setup() {
+        connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        tokenStore = new TokenStore();
+        ReflectionTestUtils.setField(tokenStore, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(tokenStore, "legacyKeys", false);
+    }
+
+    @Setup(Level.Iteration)
+    public void newUser() {
+        userId = UUID.randomUUID().toString();
+        sequentialRefreshToken = UUID.randomUUID().toString();
+        scriptRefreshToken = UUID.randomUUID().toString();
+        tokenStore.issue(userId, UUID.randomUUID().toString(), ACCESS_TTL, sequentialRefreshToken, REFRESH_TTL);
+        tokenStore.issue(userId, UUID.randomUUID().toString(), ACCESS_TTL, scriptRefreshToken, REFRESH_TTL);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteUser() {
+        tokenStore.revokeAll(userId);
+        redisTemplate.delete("user_sessions:" + userId);
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public void issueSequential() {
+        writePair(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public void issueScript() {
+        tokenStore.issue(userId, UUID.randomUUID().toString(), ACCESS_TTL, UUID.randomUUID().toString(), REFRESH_TTL);
+    }
+
+    @Benchmark
+    public boolean rotateSequential() {
+        String oldKey = "jwt_digest:" + TokenDigest.of(sequentialRefreshToken);
+        String value = redisTemplate.opsForValue().get(oldKey);
+        if (value == null) {
+            return false;
+        }
+        String oldAccessDigest = value.substring(value.indexOf('|') + 1);
+        String oldAccessKey = "jwt_digest:" + oldAccessDigest;
+        redisTemplate.getExpire(oldKey, TimeUnit.MILLISECONDS);
+        redisTemplate.getExpire(oldAccessKey, TimeUnit.MILLISECONDS);
+        redisTemplate.delete(List.of(oldKey, oldAccessKey));
+        redisTemplate.opsForZSet().remove("user_sessions:" + userId, "r:" + TokenDigest.of(sequentialRefreshToken),
+                "a:" + oldAccessDigest);
+        String next = UUID.randomUUID().toString();
+        writePair(UUID.randomUUID().toString(), next);
+        sequentialRefreshToken = next;
+        return true;
+    }
+
+    @Benchmark
+    public boolean rotateScript() {
+        String next = UUID.randomUUID().toString();
+        boolean rotated = tokenStore.rotate(scriptRefreshToken, userId, UUID.randomUUID().toString(), ACCESS_TTL,
+                next, REFRESH_TTL) != null;
+        scriptRefreshToken = next;
+        return rotated;
+    }
+
+    /**
+     * What the issue script writes, one command at a time.
+     */
+    private void writePair(String accessToken, String refreshToken) {
+        String accessDigest = TokenDigest.of(accessToken);
+        String refreshDigest = TokenDigest.of(refreshToken);
+        String sessions = "user_sessions:" + userId;
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForValue().set("jwt_digest:" + accessDigest, userId + "|" + refreshDigest, ACCESS_TTL,
+                TimeUnit.MILLISECONDS);
+        redisTemplate.opsForValue().set("jwt_digest:" + refreshDigest, userId + "|" + accessDigest, REFRESH_TTL,
+                TimeUnit.MILLISECONDS);
+        redisTemplate.opsForZSet().removeRangeByScore(sessions, Double.NEGATIVE_INFINITY, now);
+        redisTemplate.opsForZSet().add(sessions, Set.of(
+                new DefaultTypedTuple<>("a:" + accessDigest, (double) (now + ACCESS_TTL)),
+                new DefaultTypedTuple<>("r:" + refreshDigest, (double) (now + REFRESH_TTL))));
+        redisTemplate.expire(sessions, REFRESH_TTL, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,102 @@
+package com.pretest.ecommerce.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.pretest.ecommerce.security.TokenDigest;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis memory taken by the token registry for a generated set of sessions (one access and one
+ * refresh token each), keyed by raw JWT ({@code jwt_token:}) versus by digest ({@code jwt_digest:}).
+ * Not a JMH benchmark, it reports {@code used_memory} deltas. Uses database 15 of the Redis on
+ * localhost:6379 and flushes it.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.pretest.ecommerce.benchmark.TokenKeyFootprint 1000000"}
+ */
+public class TokenKeyFootprint {
+
+    private static final int BATCH = 10000;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        RedisClient client = RedisClient.create("redis://localhost:6379/15");
+        try (StatefulRedisConnection<String, String> connection = client.connect()) {
+            RedisAsyncCommands<String, String> redis = connection.async();
+            long raw = measure(redis, sessions, false);
+            long digest = measure(redis, sessions, true);
+            System.out.printf("sessions=%d%n", sessions);
+            System.out.printf("jwt_token:<jwt>     %,d bytes (%d per session)%n", raw, raw / sessions);
+            System.out.printf("jwt_digest:<sha256> %,d bytes (%d per session)%n", digest, digest / sessions);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private static long measure(RedisAsyncCommands<String, String> redis, int sessions, boolean digest)
+            throws Exception {
+        redis.flushdb().get();
+        long before = usedMemory(redis);
+
+        Algorithm algorithm = Algorithm.HMAC256("PreTestFreelanceBackendTDI");
+        long now = System.currentTimeMillis();
+        SetArgs accessTtl = SetArgs.Builder.px(86400000L);
+        SetArgs refreshTtl = SetArgs.Builder.px(604800000L);
+        List<RedisFuture<String>> pending = new ArrayList<>(BATCH * 2);
+        for (int i = 0; i < sessions; i++) {
+            String userId = UUID.randomUUID().toString();
+            String email = "user" + i + "@example.com";
+            String access = token(algorithm, email, userId, now, 86400000L);
+            String refresh = token(algorithm, email, userId, now, 604800000L);
+            pending.add(redis.set(key(access, digest), userId, accessTtl));
+            pending.add(redis.set(key(refresh, digest), userId, refreshTtl));
+            if (pending.size() >= BATCH * 2) {
+                for (RedisFuture<String> future : pending) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+                pending.clear();
+            }
+        }
+        for (RedisFuture<String> future : pending) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        long used = usedMemory(redis) - before;
+        redis.flushdb().get();
+        return used;
+    }
+
+    private static String token(Algorithm algorithm, String email, String userId, long now, long ttl) {
+        return JWT.create()
+                .withSubject(email)
+                .withClaim("role", "USER")
+                .withClaim("userId", userId)
+                .withJWTId(UUID.randomUUID().toString())
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + ttl))
+                .sign(algorithm);
+    }
+
+    private static String key(String token, boolean digest) {
+        return digest ? "jwt_digest:" + TokenDigest.of(token) : "jwt_token:" + token;
+    }
+
+    private static long usedMemory(RedisAsyncCommands<String, String> redis) throws Exception {
+        for (String line : redis.info("memory").get().split("\r\n")) {
+            if (line.startsWith("used_memory:")) {
+                return Long.parseLong(line.substring("used_memory:".length()));
+            }
+        }
+        throw new IllegalStateException("used_memory missing from INFO");
+    }
+}
@@ -4,7 +4,10 @@ import com.pretest.ecommerce.entity.User;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pretest.ecommerce.dto.LoginRequest;
 import com.pretest.ecommerce.dto.RegisterRequest;
+import com.pretest.ecommerce.dto.SessionResponse;
 import com.pretest.ecommerce.dto.TokenResponse;
+import com.pretest.ecommerce.exception.ServiceBusyException;
+import com.pretest.ecommerce.security.AuthPrincipal;
 import com.pretest.ecommerce.service.AuthService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,10 +17,16 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -169,6 +178,24 @@ class AuthControllerTest {
                                                                                 // success: false
         }
 
+        @Test
+        void loginHasherBusy() throws Exception {
+                LoginRequest request = new LoginRequest();
+                request.setEmail("test@gmail.com");
+                request.setPassword("password");
+
+                when(authService.login(any(LoginRequest.class)))
+                                .thenThrow(new ServiceBusyException("Server is busy, please try again later", 1));
+
+                mockMvc.perform(post("/api/auth/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request)))
+                                .andExpect(status().isServiceUnavailable())
+                                .andExpect(header().string("Retry-After", "1"))
+                                .andExpect(jsonPath("$.success").value(false))
+                                .andExpect(jsonPath("$.message").value("Server is busy, please try again later"));
+        }
+
         @Test
         void logoutSuccess() throws Exception {
                 String token = "Bearer test_token";
@@ -195,4 +222,48 @@ class AuthControllerTest {
                                 .andExpect(jsonPath("$.success").value(false)); // Assuming failed responses have
                                                                                 // success: false
         }
-}
\ No newline at end of file
+
+        @Test
+        void getSessionsSuccess() throws Exception {
+                UUID userId = UUID.randomUUID();
+                SessionResponse session = SessionResponse.builder()
+                                .id("session_digest")
+                                .issuedAt(LocalDateTime.now())
+                                .expiresAt(LocalDateTime.now().plusDays(7))
+                                .build();
+
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
+                when(authService.getSessions(userId)).thenReturn(List.of(session));
+
+                mockMvc.perform(get("/api/auth/sessions")
+                                .header("Authorization", "Bearer test_token"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data[0].id").value("session_digest"));
+        }
+
+        @Test
+        void revokeAllSessionsSuccess() throws Exception {
+                UUID userId = UUID.randomUUID();
+
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
+                when(authService.revokeAllSessions(userId)).thenReturn(2);
+
+                mockMvc.perform(delete("/api/auth/sessions")
+                                .header("Authorization", "Bearer test_token"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data").value("Logout Success"));
+
+                verify(authService, times(1)).revokeAllSessions(userId);
+        }
+
+        @Test
+        void revokeAllSessionsUnauthorized() throws Exception {
+                mockMvc.perform(delete("/api/auth/sessions"))
+                                .andExpect(status().isUnauthorized())
+                                .andExpect(jsonPath("$.success").value(false));
+
+                verify(authService, never()).revokeAllSessions(any());
+        }
+}
@@ -3,7 +3,7 @@ package com.pretest.ecommerce.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pretest.ecommerce.dto.PaymentRequest;
 import com.pretest.ecommerce.dto.TransactionResponse;
-import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.AuthPrincipal;
 import com.pretest.ecommerce.service.AuthService;
 import com.pretest.ecommerce.service.PaymentService;
 import org.junit.jupiter.api.Test;
@@ -15,6 +15,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -50,10 +51,8 @@ class PaymentControllerTest {
                 .status("PAID")
                 .build();
 
-        User user = new User(); // Mock user
-
-        when(authService.validateToken(any())).thenReturn(user);
-        when(paymentService.pay(any(User.class), any(PaymentRequest.class))).thenReturn(response);
+        when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(UUID.randomUUID()).build());
+        when(paymentService.pay(any(UUID.class), any(PaymentRequest.class))).thenReturn(response);
 
         mockMvc.perform(post("/api/payments")
                 .header("Authorization", "Bearer token")
@@ -73,8 +72,8 @@ class PaymentControllerTest {
                 .method("CREDIT_CARD")
                 .build();
 
-        when(authService.validateToken(any())).thenReturn(new User());
-        when(paymentService.pay(any(User.class), any(PaymentRequest.class)))
+        when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(UUID.randomUUID()).build());
+        when(paymentService.pay(any(UUID.class), any(PaymentRequest.class)))
                 .thenThrow(
                         new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, "Payment failed"));
 
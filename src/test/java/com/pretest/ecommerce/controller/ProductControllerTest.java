@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pretest.ecommerce.dto.CreateProductRequest;
 import com.pretest.ecommerce.dto.ProductResponse;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.AuthPrincipal;
 import com.pretest.ecommerce.service.AuthService;
 import com.pretest.ecommerce.service.ImageService;
 import com.pretest.ecommerce.service.ProductService;
@@ -52,6 +53,8 @@ class ProductControllerTest {
                 user.setId(UUID.randomUUID());
                 user.setEmail("test@gmail.com");
                 user.setName("Test User");
+
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(user.getId()).build());
         }
 
         @Test
@@ -71,7 +74,7 @@ class ProductControllerTest {
                                 .storeName("Test Store")
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(imageService.saveImage(any())).thenReturn(imageUrl);
                 when(productService.create(any(User.class), org.mockito.ArgumentMatchers.anyLong(),
                                 any(CreateProductRequest.class))).thenReturn(response);
@@ -118,7 +121,7 @@ class ProductControllerTest {
 
                 java.util.Map<String, Double> ratingRequest = java.util.Collections.singletonMap("rating", 4.5);
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(productService.rateProduct(any(User.class), eq(productId), eq(4.5))).thenReturn(response);
 
                 mockMvc.perform(post("/api/products/{productId}/rate", productId)
@@ -137,7 +140,7 @@ class ProductControllerTest {
                 java.util.Map<String, Double> ratingRequest = java.util.Collections.singletonMap("rating", 6.0); // Invalid
                                                                                                                  // Rating
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(productService.rateProduct(any(User.class), eq(productId), eq(6.0)))
                                 .thenThrow(new org.springframework.web.server.ResponseStatusException(
                                                 org.springframework.http.HttpStatus.BAD_REQUEST, "Invalid rating"));
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pretest.ecommerce.dto.CreateStoreRequest;
 import com.pretest.ecommerce.dto.StoreResponse;
 import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.AuthPrincipal;
 import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.service.CountMode;
 import com.pretest.ecommerce.service.StoreService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,14 +15,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.doNothing;
@@ -29,6 +36,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -56,6 +64,8 @@ public class StoreControllerTest {
                 user.setId(UUID.randomUUID());
                 user.setEmail("test@gmail.com");
                 user.setName("Test User");
+
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(user.getId()).build());
                 user.setRole("SELLER");
         }
 
@@ -73,7 +83,7 @@ public class StoreControllerTest {
                                 .rating(BigDecimal.ZERO)
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.create(any(User.class), any(CreateStoreRequest.class))).thenReturn(storeResponse);
 
                 mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders
@@ -101,7 +111,7 @@ public class StoreControllerTest {
                                 .rating(BigDecimal.ZERO)
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.create(any(User.class), any(CreateStoreRequest.class))).thenReturn(storeResponse);
 
                 mockMvc.perform(post("/api/stores")
@@ -120,7 +130,7 @@ public class StoreControllerTest {
                 request.setName("Test Store");
                 request.setLocation("Test Location");
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.create(any(User.class), any(CreateStoreRequest.class)))
                                 .thenThrow(new ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST,
                                                 "User already has a store"));
@@ -143,7 +153,7 @@ public class StoreControllerTest {
                 normalUser.setName("Normal User");
                 normalUser.setRole("USER");
 
-                when(authService.validateToken(any())).thenReturn(normalUser);
+                when(authService.loadUser(any())).thenReturn(normalUser);
                 when(storeService.create(any(User.class), any(CreateStoreRequest.class)))
                                 .thenThrow(new ResponseStatusException(org.springframework.http.HttpStatus.FORBIDDEN,
                                                 "Only Seller can create a store"));
@@ -170,7 +180,7 @@ public class StoreControllerTest {
 
                 Page<StoreResponse> page = new PageImpl<>(Collections.singletonList(storeResponse));
 
-                when(storeService.findAll(0, 10)).thenReturn(page);
+                when(storeService.findAll(0, 10, CountMode.EXACT)).thenReturn(page);
 
                 mockMvc.perform(get("/api/stores")
                                 .param("page", "0")
@@ -181,6 +191,71 @@ public class StoreControllerTest {
                                 .andExpect(jsonPath("$.data[0].products").doesNotExist());
         }
 
+        @Test
+        void findAllWithoutCountSuccess() throws Exception {
+                StoreResponse storeResponse = StoreResponse.builder()
+                                .id(1L)
+                                .name("Test Store")
+                                .build();
+                Slice<StoreResponse> slice = new SliceImpl<>(Collections.singletonList(storeResponse),
+                                PageRequest.of(0, 1), true);
+
+                when(storeService.findAll(0, 1, CountMode.NONE)).thenReturn(slice);
+
+                mockMvc.perform(get("/api/stores")
+                                .param("page", "0")
+                                .param("size", "1")
+                                .param("count", "none"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.data[0].name").value("Test Store"))
+                                .andExpect(jsonPath("$.paging.currentPage").value(0))
+                                .andExpect(jsonPath("$.paging.hasNext").value(true))
+                                .andExpect(jsonPath("$.paging.totalPage").doesNotExist());
+        }
+
+        @Test
+        void findAllWithEstimatedCountSuccess() throws Exception {
+                StoreResponse storeResponse = StoreResponse.builder()
+                                .id(1L)
+                                .name("Test Store")
+                                .build();
+                Page<StoreResponse> page = new PageImpl<>(Collections.singletonList(storeResponse),
+                                PageRequest.of(0, 1), 40);
+
+                when(storeService.findAll(0, 1, CountMode.ESTIMATE)).thenReturn(page);
+
+                mockMvc.perform(get("/api/stores")
+                                .param("page", "0")
+                                .param("size", "1")
+                                .param("count", "estimate"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.paging.totalPage").value(40))
+                                .andExpect(jsonPath("$.paging.totalEstimated").value(true))
+                                .andExpect(jsonPath("$.paging.hasNext").value(true));
+        }
+
+        @Test
+        void findAllFailed_unknownCount() throws Exception {
+                mockMvc.perform(get("/api/stores")
+                                .param("count", "approximate"))
+                                .andExpect(status().isBadRequest())
+                                .andExpect(jsonPath("$.message").value("Unknown count"));
+        }
+
+        @Test
+        void findAllRateLimitHeaders() throws Exception {
+                when(storeService.findAll(0, 10, CountMode.EXACT)).thenReturn(new PageImpl<>(Collections.emptyList()));
+
+                mockMvc.perform(get("/api/stores")
+                                .param("page", "0")
+                                .param("size", "10"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("RateLimit-Limit", "100"))
+                                .andExpect(header().string("RateLimit-Policy", "100;w=60"))
+                                .andExpect(header().exists("RateLimit-Remaining"))
+                                .andExpect(header().exists("RateLimit-Reset"));
+        }
+
         @MockBean
         private org.springframework.boot.autoconfigure.web.servlet.error.ErrorMvcAutoConfiguration errorMvcAutoConfiguration;
 
@@ -266,7 +341,7 @@ public class StoreControllerTest {
                                 .name("My Store")
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.findByUser(any(User.class))).thenReturn(storeResponse);
 
                 mockMvc.perform(get("/api/stores/my-store")
@@ -285,7 +360,7 @@ public class StoreControllerTest {
                                 .imageUrl("http://example.com/image.jpg")
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(imageService.saveImage(any())).thenReturn("http://example.com/image.jpg");
                 when(storeService.update(any(User.class), any(com.pretest.ecommerce.dto.UpdateStoreRequest.class)))
                                 .thenReturn(storeResponse);
@@ -320,7 +395,7 @@ public class StoreControllerTest {
                                 .location("Updated Location")
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.update(any(User.class), any(com.pretest.ecommerce.dto.UpdateStoreRequest.class)))
                                 .thenReturn(storeResponse);
 
@@ -352,6 +427,123 @@ public class StoreControllerTest {
                                 .andExpect(jsonPath("$.data[0].name").value("Test Product"));
         }
 
+        @Test
+        void listAllProductsWithoutCountSuccess() throws Exception {
+                Slice<com.pretest.ecommerce.dto.ProductResponse> slice = new SliceImpl<>(Collections.emptyList(),
+                                PageRequest.of(2, 10), true);
+
+                when(productService.search(argThat(request -> "none".equals(request.getCount())))).thenReturn(slice);
+
+                mockMvc.perform(get("/api/stores/products")
+                                .param("page", "2")
+                                .param("count", "none"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.paging.currentPage").value(2))
+                                .andExpect(jsonPath("$.paging.limit").value(10))
+                                .andExpect(jsonPath("$.paging.hasNext").value(true))
+                                .andExpect(jsonPath("$.paging.totalPage").doesNotExist())
+                                .andExpect(jsonPath("$.paging.totalEstimated").doesNotExist());
+        }
+
+        @Test
+        void listAllProductsWithEstimatedCountSuccess() throws Exception {
+                Page<com.pretest.ecommerce.dto.ProductResponse> page = new PageImpl<>(Collections.emptyList(),
+                                PageRequest.of(0, 10), 2013);
+
+                when(productService.search(argThat(request -> "estimate".equals(request.getCount())))).thenReturn(page);
+
+                mockMvc.perform(get("/api/stores/products")
+                                .param("count", "estimate"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.paging.totalPage").value(202))
+                                .andExpect(jsonPath("$.paging.totalEstimated").value(true));
+        }
+
+        @Test
+        void listAllProductsExactCountIsNotFlagged() throws Exception {
+                Page<com.pretest.ecommerce.dto.ProductResponse> page = new PageImpl<>(Collections.emptyList(),
+                                PageRequest.of(0, 10), 2013);
+
+                when(productService.search(any(com.pretest.ecommerce.dto.SearchProductRequest.class))).thenReturn(page);
+
+                mockMvc.perform(get("/api/stores/products"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.paging.totalPage").value(202))
+                                .andExpect(jsonPath("$.paging.totalEstimated").doesNotExist());
+        }
+
+        @Test
+        void listAllProductsByTermsSuccess() throws Exception {
+                Page<com.pretest.ecommerce.dto.ProductResponse> page = new PageImpl<>(Collections.emptyList());
+
+                when(productService.search(argThat(request -> "kemeja batik".equals(request.getName())
+                                && "any".equals(request.getTerms())))).thenReturn(page);
+
+                mockMvc.perform(get("/api/stores/products")
+                                .param("name", "kemeja batik")
+                                .param("terms", "any"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data").isEmpty());
+        }
+
+        @Test
+        void listAllProductsByCursorSuccess() throws Exception {
+                com.pretest.ecommerce.dto.ProductResponse response = com.pretest.ecommerce.dto.ProductResponse.builder()
+                                .id(1L)
+                                .name("Test Product")
+                                .price(new BigDecimal("10000"))
+                                .build();
+                Slice<com.pretest.ecommerce.dto.ProductResponse> slice = new SliceImpl<>(
+                                Collections.singletonList(response), PageRequest.of(0, 1), true);
+
+                when(productService.scroll(any(com.pretest.ecommerce.dto.SearchProductRequest.class))).thenReturn(slice);
+                when(productService.nextCursor(any(com.pretest.ecommerce.dto.SearchProductRequest.class), eq(slice)))
+                                .thenReturn("UFJJQ0V8MTAwMDB8MQ");
+
+                mockMvc.perform(get("/api/stores/products")
+                                .param("sort", "price")
+                                .param("cursor", "")
+                                .param("limit", "1"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data[0].name").value("Test Product"))
+                                .andExpect(jsonPath("$.paging.limit").value(1))
+                                .andExpect(jsonPath("$.paging.nextCursor").value("UFJJQ0V8MTAwMDB8MQ"))
+                                .andExpect(jsonPath("$.paging.totalPage").doesNotExist());
+        }
+
+        @Test
+        void listAllProductsWithFacetsSuccess() throws Exception {
+                com.pretest.ecommerce.dto.ProductResponse product = com.pretest.ecommerce.dto.ProductResponse.builder()
+                                .id(1L)
+                                .name("Test Product")
+                                .build();
+                com.pretest.ecommerce.dto.FacetedProductsResponse response = com.pretest.ecommerce.dto.FacetedProductsResponse
+                                .builder()
+                                .products(Collections.singletonList(product))
+                                .total(25L)
+                                .categories(Collections.singletonList(
+                                                new com.pretest.ecommerce.dto.FacetCount("Fashion", null, 25L)))
+                                .build();
+
+                when(productService.facets(any(com.pretest.ecommerce.dto.SearchProductRequest.class),
+                                eq(List.of("category")))).thenReturn(response);
+
+                mockMvc.perform(get("/api/stores/products/facets")
+                                .param("name", "kemeja")
+                                .param("facets", "category")
+                                .param("limit", "10"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.success").value(true))
+                                .andExpect(jsonPath("$.data.products[0].name").value("Test Product"))
+                                .andExpect(jsonPath("$.data.categories[0].value").value("Fashion"))
+                                .andExpect(jsonPath("$.data.categories[0].count").value(25))
+                                .andExpect(jsonPath("$.data.prices").doesNotExist())
+                                .andExpect(jsonPath("$.data.total").value(25))
+                                .andExpect(jsonPath("$.paging.totalPage").value(3));
+        }
+
         @Test
         void updateProductMyStoreSuccess() throws Exception {
                 Long productId = 1L;
@@ -360,7 +552,7 @@ public class StoreControllerTest {
                                 .name("Updated Product")
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(productService.update(any(User.class), any(Long.class),
                                 any(com.pretest.ecommerce.dto.UpdateProductRequest.class)))
                                 .thenReturn(response);
@@ -379,7 +571,7 @@ public class StoreControllerTest {
         void deleteProductMyStoreSuccess() throws Exception {
                 Long productId = 1L;
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
 
                 mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete(
                                 "/api/stores/my-store/products/{productId}", productId)
@@ -392,7 +584,7 @@ public class StoreControllerTest {
         @Test
         void updateProductMyStoreFailed_notOwner() throws Exception {
                 Long productId = 1L;
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(productService.update(any(User.class), eq(productId),
                                 any(com.pretest.ecommerce.dto.UpdateProductRequest.class)))
                                 .thenThrow(new ResponseStatusException(org.springframework.http.HttpStatus.FORBIDDEN,
@@ -411,7 +603,7 @@ public class StoreControllerTest {
         @Test
         void deleteProductMyStoreFailed_notOwner() throws Exception {
                 Long productId = 1L;
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 doThrow(new ResponseStatusException(org.springframework.http.HttpStatus.FORBIDDEN,
                                 "Product does not belong to your store"))
                                 .when(productService).delete(any(User.class), eq(productId));
@@ -438,7 +630,7 @@ public class StoreControllerTest {
                 Page<com.pretest.ecommerce.dto.ProductResponse> page = new PageImpl<>(
                                 Collections.singletonList(response));
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.findByUser(any(User.class))).thenReturn(storeResponse);
                 when(productService.search(any(com.pretest.ecommerce.dto.SearchProductRequest.class))).thenReturn(page);
 
@@ -479,7 +671,7 @@ public class StoreControllerTest {
                 org.springframework.mock.web.MockMultipartFile imageFile = new org.springframework.mock.web.MockMultipartFile(
                                 "image", "test.jpg", "image/jpeg", "test image content".getBytes());
 
-                when(authService.validateToken(token)).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 when(storeService.findByUser(user)).thenReturn(storeResponse);
                 when(productService.create(any(User.class), any(Long.class),
                                 any(com.pretest.ecommerce.dto.CreateProductRequest.class))).thenReturn(productResponse);
@@ -504,7 +696,7 @@ public class StoreControllerTest {
                 User user = new User();
                 user.setId(java.util.UUID.randomUUID());
 
-                when(authService.validateToken(token)).thenReturn(user);
+                when(authService.loadUser(any())).thenReturn(user);
                 doNothing().when(storeService).delete(user);
 
                 mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders
@@ -1,8 +1,9 @@
 package com.pretest.ecommerce.controller;
 
 import com.pretest.ecommerce.dto.TransactionResponse;
-import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.AuthPrincipal;
 import com.pretest.ecommerce.service.AuthService;
+import com.pretest.ecommerce.service.CountMode;
 import com.pretest.ecommerce.service.TransactionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,9 +45,7 @@ class TransactionControllerTest {
                                 .details(Collections.emptyList())
                                 .build();
 
-                User user = new User();
-                user.setId(userId);
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
                 when(transactionService.checkout(userId)).thenReturn(Collections.singletonList(response));
 
                 mockMvc.perform(post("/api/transactions/checkout")
@@ -60,10 +59,8 @@ class TransactionControllerTest {
         @Test
         void checkoutFailed() throws Exception {
                 UUID userId = UUID.randomUUID();
-                User user = new User();
-                user.setId(userId);
 
-                when(authService.validateToken(any())).thenReturn(user);
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
                 when(transactionService.checkout(userId))
                                 .thenThrow(new org.springframework.web.server.ResponseStatusException(
                                                 org.springframework.http.HttpStatus.BAD_REQUEST, "Cart is empty"));
@@ -79,8 +76,6 @@ class TransactionControllerTest {
         @Test
         void listTransactionsSuccess() throws Exception {
                 UUID userId = UUID.randomUUID();
-                User user = new User();
-                user.setId(userId);
 
                 TransactionResponse response = TransactionResponse.builder()
                                 .id(1L)
@@ -90,9 +85,9 @@ class TransactionControllerTest {
                 org.springframework.data.domain.Page<TransactionResponse> page = new org.springframework.data.domain.PageImpl<>(
                                 Collections.singletonList(response));
 
-                when(authService.validateToken(any())).thenReturn(user);
-                when(transactionService.getUserTransactions(any(User.class), any(Integer.class), any(Integer.class),
-                                any()))
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
+                when(transactionService.getUserTransactions(eq(userId), any(Integer.class), any(Integer.class),
+                                any(), eq(CountMode.EXACT)))
                                 .thenReturn(page);
 
                 mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders
@@ -108,8 +103,6 @@ class TransactionControllerTest {
         @Test
         void getTransactionByInvoiceSuccess() throws Exception {
                 UUID userId = UUID.randomUUID();
-                User user = new User();
-                user.setId(userId);
                 String invoiceNumber = "INV-123";
 
                 TransactionResponse response = TransactionResponse.builder()
@@ -117,8 +110,8 @@ class TransactionControllerTest {
                                 .invoiceNumber(invoiceNumber)
                                 .build();
 
-                when(authService.validateToken(any())).thenReturn(user);
-                when(transactionService.getTransactionByInvoice(any(User.class), eq(invoiceNumber)))
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
+                when(transactionService.getTransactionByInvoice(eq(userId), eq(invoiceNumber)))
                                 .thenReturn(response);
 
                 mockMvc.perform(org.springframework.test.web.servlet.request.MockMvcRequestBuilders
@@ -132,12 +125,10 @@ class TransactionControllerTest {
         @Test
         void getTransactionByInvoiceFailed() throws Exception {
                 UUID userId = UUID.randomUUID();
-                User user = new User();
-                user.setId(userId);
                 String invoiceNumber = "INV-INVALID";
 
-                when(authService.validateToken(any())).thenReturn(user);
-                when(transactionService.getTransactionByInvoice(any(User.class), eq(invoiceNumber)))
+                when(authService.authenticate(any())).thenReturn(AuthPrincipal.builder().userId(userId).build());
+                when(transactionService.getTransactionByInvoice(eq(userId), eq(invoiceNumber)))
                                 .thenThrow(new org.springframework.web.server.ResponseStatusException(
                                                 org.springframework.http.HttpStatus.NOT_FOUND,
                                                 "Transaction not found"));
@@ -0,0 +1,77 @@
+package com.pretest.ecommerce.dto;
+
+import com.pretest.ecommerce.service.CountMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PagingResponseTest {
+
+        private static final List<String> ROWS = List.of("a", "b");
+
+        @Test
+        void noneHasNoTotal() {
+                Slice<String> slice = CountMode.NONE.total(new SliceImpl<>(ROWS, PageRequest.of(1, 2), true),
+                                () -> 99, () -> 99);
+
+                PagingResponse paging = PagingResponse.of(slice, CountMode.NONE);
+
+                assertEquals(1, paging.getCurrentPage());
+                assertEquals(2, paging.getLimit());
+                assertTrue(paging.getHasNext());
+                assertNull(paging.getTotalPage());
+                assertNull(paging.getTotalEstimated());
+        }
+
+        @Test
+        void noneDropsATotalThePageAlreadyHad() {
+                Slice<String> slice = CountMode.NONE.total(new PageImpl<>(ROWS, PageRequest.of(0, 2), 10),
+                                () -> 10, () -> 10);
+
+                assertNull(PagingResponse.of(slice, CountMode.NONE).getTotalPage());
+        }
+
+        @Test
+        void exactHasTheCountedTotal() {
+                Slice<String> slice = CountMode.EXACT.total(new SliceImpl<>(ROWS, PageRequest.of(1, 2), true),
+                                () -> 9, () -> 1000);
+
+                PagingResponse paging = PagingResponse.of(slice, CountMode.EXACT);
+
+                assertEquals(1, paging.getCurrentPage());
+                assertEquals(5, paging.getTotalPage());
+                assertTrue(paging.getHasNext());
+                assertNull(paging.getTotalEstimated());
+                assertEquals(5, PagingResponse.of(slice).getTotalPage());
+        }
+
+        @Test
+        void estimateHasTheEstimatedTotalFlagged() {
+                Slice<String> slice = CountMode.ESTIMATE.total(new SliceImpl<>(ROWS, PageRequest.of(1, 2), true),
+                                () -> 9, () -> 1000);
+
+                PagingResponse paging = PagingResponse.of(slice, CountMode.ESTIMATE);
+
+                assertEquals(500, paging.getTotalPage());
+                assertTrue(paging.getTotalEstimated());
+        }
+
+        @Test
+        void estimateBelowTheRowsSeenCoversThem() {
+                Slice<String> slice = CountMode.ESTIMATE.total(new SliceImpl<>(ROWS, PageRequest.of(2, 2), true),
+                                () -> 9, () -> 1);
+
+                PagingResponse paging = PagingResponse.of(slice, CountMode.ESTIMATE);
+
+                assertEquals(4, paging.getTotalPage());
+                assertTrue(paging.getTotalEstimated());
+        }
+}
@@ -0,0 +1,83 @@
+package com.pretest.ecommerce.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+class RowEstimateRepositoryTest {
+
+        // JdbcTemplate also has a queryForObject(sql, type) overload, and estimate calls the varargs one
+        private static final Object[] NO_ARGS = new Object[0];
+
+        private static final String PLAN = """
+                        [
+                          {
+                            "Plan": {
+                              "Node Type": "Seq Scan",
+                              "Parallel Aware": false,
+                              "Relation Name": "products",
+                              "Alias": "p",
+                              "Startup Cost": 0.00,
+                              "Total Cost": 21934.00,
+                              "Plan Rows": 48211,
+                              "Plan Width": 4,
+                              "Filter": "((category)::text = 'Fashion'::text)"
+                            }
+                          }
+                        ]""";
+
+        private JdbcTemplate jdbcTemplate;
+
+        private RowEstimateRepository repository;
+
+        @BeforeEach
+        void setUp() {
+                jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+                repository = new RowEstimateRepository();
+                ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+                ReflectionTestUtils.setField(repository, "objectMapper", new ObjectMapper());
+        }
+
+        @Test
+        void readsPlanRowsOfTheTopNode() {
+                when(jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT 1 FROM products p WHERE p.category = ?",
+                                String.class, "Fashion")).thenReturn(PLAN);
+
+                assertEquals(48211, repository.estimate("SELECT 1 FROM products p WHERE p.category = ?", "Fashion"));
+        }
+
+        @Test
+        void readsTheTopNodeOfANestedPlan() {
+                when(jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT 1 FROM stores", String.class, NO_ARGS))
+                                .thenReturn("""
+                                                [{"Plan": {"Node Type": "Hash Join", "Plan Rows": 120,
+                                                  "Plans": [{"Node Type": "Seq Scan", "Plan Rows": 5000}]}}]""");
+
+                assertEquals(120, repository.estimate("SELECT 1 FROM stores"));
+        }
+
+        @Test
+        void missingPlanRowsReadsAsZero() {
+                when(jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT 1 FROM stores", String.class, NO_ARGS))
+                                .thenReturn("[{\"Plan\": {\"Node Type\": \"Result\"}}]");
+
+                assertEquals(0, repository.estimate("SELECT 1 FROM stores"));
+        }
+
+        @Test
+        void unreadablePlanFails() {
+                when(jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) SELECT 1 FROM stores", String.class, NO_ARGS))
+                                .thenReturn("Seq Scan on stores");
+
+                IllegalStateException exception = assertThrows(IllegalStateException.class,
+                                () -> repository.estimate("SELECT 1 FROM stores"));
+                assertEquals("Unreadable plan for SELECT 1 FROM stores", exception.getMessage());
+        }
+}
@@ -0,0 +1,153 @@
+package com.pretest.ecommerce.security;
+
+import com.pretest.ecommerce.config.WebConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimitFilterTest {
+
+        private ConcurrencyLimitFilter filter;
+
+        private SimpleMeterRegistry meters;
+
+        @BeforeEach
+        void setUp() {
+                meters = new SimpleMeterRegistry();
+                filter = new ConcurrencyLimitFilter();
+                ReflectionTestUtils.setField(filter, "enabled", true);
+                ReflectionTestUtils.setField(filter, "minLimit", 1);
+                ReflectionTestUtils.setField(filter, "maxLimit", 100);
+                // every sample closes a window, so each request updates the limit
+                ReflectionTestUtils.setField(filter, "window", 0L);
+                ReflectionTestUtils.setField(filter, "minWindowSamples", 1);
+                ReflectionTestUtils.setField(filter, "baselineWindows", 60);
+                ReflectionTestUtils.setField(filter, "tolerance", 1.5);
+                ReflectionTestUtils.setField(filter, "smoothing", 1.0);
+                ReflectionTestUtils.setField(filter, "retryAfter", 1L);
+                ReflectionTestUtils.setField(filter, "meterRegistry",
+                                new StaticListableBeanFactory(Map.of("meters", meters)).getBeanProvider(MeterRegistry.class));
+        }
+
+        @Test
+        void rejectsOnceInFlightReachesLimit() throws Exception {
+                start(1);
+                MockHttpServletResponse nested = new MockHttpServletResponse();
+
+                MockHttpServletResponse outer = perform((request, response) -> {
+                        filter.doFilter(new MockHttpServletRequest(), nested, (innerRequest, innerResponse) -> {
+                        });
+                });
+
+                assertEquals(200, outer.getStatus());
+                assertEquals(503, nested.getStatus());
+                assertEquals("1", nested.getHeader("Retry-After"));
+                assertEquals("Server busy", nested.getContentAsString());
+                assertEquals(1.0, meters.get("concurrency.rejected").counter().count());
+                assertEquals(0.0, meters.get("concurrency.in.flight").gauge().value());
+        }
+
+        @Test
+        void admitsAgainOnceRequestsFinish() throws Exception {
+                start(1);
+
+                perform((request, response) -> {
+                });
+
+                assertEquals(200, perform((request, response) -> {
+                }).getStatus());
+        }
+
+        @Test
+        void growsWhileLatencyHoldsAndTheLimitIsUsed() throws Exception {
+                start(2);
+
+                perform(sleeping(2));
+                perform(sleeping(2));
+
+                assertEquals(3, limit());
+        }
+
+        @Test
+        void shrinksWhenLatencyRises() throws Exception {
+                start(20);
+
+                perform(sleeping(2));
+                assertEquals(20, limit());
+
+                perform(sleeping(30));
+                int slowed = limit();
+                assertTrue(slowed < 20, "limit " + slowed);
+                assertTrue(slowed >= 10, "backs off by at most half, limit " + slowed);
+
+                for (int i = 0; i < 5; i++) {
+                        perform(sleeping(30));
+                }
+                assertTrue(limit() < slowed, "limit " + limit());
+        }
+
+        @Test
+        void passesEverythingWhenDisabled() throws Exception {
+                ReflectionTestUtils.setField(filter, "enabled", false);
+                start(1);
+                MockHttpServletResponse nested = new MockHttpServletResponse();
+
+                perform((request, response) -> {
+                        filter.doFilter(new MockHttpServletRequest(), nested, (innerRequest, innerResponse) -> {
+                        });
+                });
+
+                assertEquals(200, nested.getStatus());
+        }
+
+        @Test
+        void runsAfterRateLimitAndBeforeAuthentication() {
+                WebConfig config = new WebConfig();
+                ReflectionTestUtils.setField(config, "rateLimitFilter", new RateLimitFilter());
+                ReflectionTestUtils.setField(config, "concurrencyLimitFilter", filter);
+                ReflectionTestUtils.setField(config, "authenticationFilter", new AuthenticationFilter());
+
+                int rateLimit = config.rateLimitFilterRegistration().getOrder();
+                int concurrencyLimit = config.concurrencyLimitFilterRegistration().getOrder();
+                int authentication = config.authenticationFilterRegistration().getOrder();
+
+                assertTrue(rateLimit < concurrencyLimit);
+                assertTrue(concurrencyLimit < authentication);
+        }
+
+        private void start(int initialLimit) {
+                ReflectionTestUtils.setField(filter, "initialLimit", initialLimit);
+                filter.init();
+        }
+
+        private int limit() {
+                return (int) ReflectionTestUtils.getField(filter, "limit");
+        }
+
+        private MockHttpServletResponse perform(FilterChain chain) throws Exception {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(new MockHttpServletRequest(), response, chain);
+                return response;
+        }
+
+        private static FilterChain sleeping(long millis) {
+                return (request, response) -> {
+                        try {
+                                Thread.sleep(millis);
+                        } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                        }
+                };
+        }
+}
@@ -0,0 +1,75 @@
+package com.pretest.ecommerce.security;
+
+import com.pretest.ecommerce.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A one-thread hasher with room for one queued task: once both are taken, callers are turned
+ * away with a 503 instead of waiting.
+ */
+class PasswordHasherTest {
+
+        private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private PasswordHasher hasher;
+
+        @BeforeEach
+        void setUp() {
+                hasher = new PasswordHasher();
+                ReflectionTestUtils.setField(hasher, "meterRegistry", meters);
+                ReflectionTestUtils.setField(hasher, "threads", 1);
+                ReflectionTestUtils.setField(hasher, "queueCapacity", 1);
+                ReflectionTestUtils.setField(hasher, "retryAfter", 3L);
+                ReflectionTestUtils.setField(hasher, "minCost", 4);
+                ReflectionTestUtils.setField(hasher, "targetLatency", 0L);
+                ReflectionTestUtils.invokeMethod(hasher, "init");
+        }
+
+        @AfterEach
+        void tearDown() {
+                release.countDown();
+                ReflectionTestUtils.invokeMethod(hasher, "shutdown");
+        }
+
+        @Test
+        void hashesAndChecksWhileThereIsRoom() {
+                String hashed = hasher.hash("password123");
+
+                assertTrue(hasher.check("password123", hashed));
+                assertEquals(0, meters.counter("password.hasher.rejected").count());
+        }
+
+        @Test
+        void saturatedHasherFailsFast() {
+                ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(hasher, "executor");
+                executor.submit(this::awaitRelease);
+                executor.submit(this::awaitRelease);
+
+                ServiceBusyException exception = assertThrows(ServiceBusyException.class,
+                                () -> hasher.hash("password123"));
+
+                assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatusCode());
+                assertEquals("3", exception.getHeaders().getFirst("Retry-After"));
+                assertThrows(ServiceBusyException.class, () -> hasher.check("password123", "$2a$04$invalid"));
+                assertEquals(2, meters.counter("password.hasher.rejected").count());
+        }
+
+        private Void awaitRelease() throws InterruptedException {
+                release.await();
+                return null;
+        }
+}
@@ -0,0 +1,270 @@
+package com.pretest.ecommerce.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * How the filter keys a caller: by the user id of a well-signed token, whether or not this node
+ * has it cached, and by IP for anything else; how many buckets it keeps; and the headers and
+ * status it answers with. The default policy holds two requests a minute, the orders policy three
+ * tokens a minute with checkout costing two.
+ */
+class RateLimitFilterTest {
+
+        private static final String SECRET = "rate-limit-test-secret";
+
+        private static final Map<String, String> ORDERS = Map.of(
+                        "noptzy.rate-limit.policies.orders.routes", "POST /api/checkout=2,GET /api/orders",
+                        "noptzy.rate-limit.policies.orders.capacity", "3",
+                        "noptzy.rate-limit.policies.orders.period", "60000");
+
+        private TokenVerifier tokenVerifier;
+
+        private TokenCache tokenCache;
+
+        private SimpleMeterRegistry meters;
+
+        private RedisRateLimiter redisRateLimiter;
+
+        private long maxBuckets = 1000;
+
+        private long idleTtl = 300000;
+
+        @BeforeEach
+        void setUp() {
+                tokenVerifier = new TokenVerifier();
+                ReflectionTestUtils.setField(tokenVerifier, "secretKey", SECRET);
+                ReflectionTestUtils.invokeMethod(tokenVerifier, "init");
+
+                tokenCache = new TokenCache();
+                ReflectionTestUtils.setField(tokenCache, "maxSize", 1000L);
+                ReflectionTestUtils.setField(tokenCache, "ttl", 60000L);
+                ReflectionTestUtils.invokeMethod(tokenCache, "init");
+
+                meters = new SimpleMeterRegistry();
+                redisRateLimiter = Mockito.mock(RedisRateLimiter.class);
+        }
+
+        @Test
+        void keysAWellSignedTokenByUserWhetherOrNotItIsCached() throws Exception {
+                RateLimitFilter filter = filter("local", Map.of());
+                UUID userId = UUID.randomUUID();
+                String token = token(userId, SECRET);
+
+                assertEquals("1", perform(filter, token, "203.0.113.1").getHeader("RateLimit-Remaining"));
+
+                tokenCache.put(TokenDigest.of(token), AuthPrincipal.builder()
+                                .userId(userId)
+                                .expiresAt(Instant.now().plus(Duration.ofHours(1)))
+                                .build());
+                assertEquals("0", perform(filter, token, "203.0.113.2").getHeader("RateLimit-Remaining"));
+                assertEquals(429, perform(filter, token, "203.0.113.3").getStatus());
+        }
+
+        @Test
+        void keysAForgedTokenByAddress() throws Exception {
+                RateLimitFilter filter = filter("local", Map.of());
+                UUID victim = UUID.randomUUID();
+                String forged = token(victim, "not-the-secret");
+
+                perform(filter, forged, "203.0.113.1");
+                perform(filter, forged, "203.0.113.1");
+
+                assertEquals(429, perform(filter, forged, "203.0.113.1").getStatus());
+                assertEquals(200, perform(filter, token(victim, SECRET), "203.0.113.9").getStatus());
+        }
+
+        @Test
+        void givesRedisTheSameKeyOnEveryNode() throws Exception {
+                RateLimitFilter filter = filter("redis", Map.of());
+                UUID userId = UUID.randomUUID();
+
+                perform(filter, token(userId, SECRET), "203.0.113.1");
+
+                verify(redisRateLimiter).tryConsume(eq("default:user:" + userId), eq(2L), eq(Duration.ofMillis(60000)),
+                                eq(1L));
+        }
+
+        @Test
+        void bucketCountStaysBoundedWhateverTheNumberOfCallers() throws Exception {
+                maxBuckets = 100;
+                RateLimitFilter filter = filter("local", Map.of());
+
+                for (int i = 0; i < 2000; i++) {
+                        perform(filter, null, "10.0." + (i / 256) + "." + (i % 256));
+                }
+
+                Cache<String, ?> buckets = buckets(filter);
+                buckets.cleanUp();
+                assertTrue(buckets.estimatedSize() <= 100, "buckets " + buckets.estimatedSize());
+        }
+
+        @Test
+        void evictedCallerStartsOverWithAFullBucket() throws Exception {
+                idleTtl = 20;
+                RateLimitFilter filter = filter("local", Map.of());
+                perform(filter, null, "203.0.113.1");
+                perform(filter, null, "203.0.113.1");
+                assertEquals(429, perform(filter, null, "203.0.113.1").getStatus());
+
+                // far less than the one-minute refill, so only eviction can free the caller
+                Thread.sleep(100);
+                buckets(filter).cleanUp();
+
+                assertEquals(0, buckets(filter).estimatedSize());
+                MockHttpServletResponse response = perform(filter, null, "203.0.113.1");
+                assertEquals(200, response.getStatus());
+                assertEquals("1", response.getHeader("RateLimit-Remaining"));
+        }
+
+        @Test
+        void chargesTheRouteCostAndRejectsWithTheExactWait() throws Exception {
+                RateLimitFilter filter = filter("local", ORDERS);
+
+                MockHttpServletResponse checkout = perform(filter, "POST", "/api/checkout", "203.0.113.1");
+                assertEquals(200, checkout.getStatus());
+                assertHeaders(checkout, "3", "1", "40", "3;w=60");
+
+                MockHttpServletResponse tooExpensive = perform(filter, "POST", "/api/checkout", "203.0.113.1");
+                assertEquals(429, tooExpensive.getStatus());
+                assertHeaders(tooExpensive, "3", "1", "40", "3;w=60");
+                // one token short, and the policy refills one every 20s
+                assertEquals("20", tooExpensive.getHeader("Retry-After"));
+                assertEquals("Too many requests", tooExpensive.getContentAsString());
+
+                MockHttpServletResponse last = perform(filter, "GET", "/api/orders", "203.0.113.1");
+                assertEquals(200, last.getStatus());
+                assertHeaders(last, "3", "0", "60", "3;w=60");
+                assertNull(last.getHeader("Retry-After"));
+
+                MockHttpServletResponse rejected = perform(filter, "GET", "/api/orders", "203.0.113.1");
+                assertEquals(429, rejected.getStatus());
+                assertHeaders(rejected, "3", "0", "60", "3;w=60");
+                assertEquals("20", rejected.getHeader("Retry-After"));
+
+                // the default policy's bucket is untouched
+                assertHeaders(perform(filter, "GET", "/api/stores", "203.0.113.1"), "2", "1", "30", "2;w=60");
+        }
+
+        @Test
+        void mapsTheRedisProbeOntoTheHeaders() throws Exception {
+                RateLimitFilter filter = filter("redis", ORDERS);
+                when(redisRateLimiter.tryConsume(eq("orders:ip:203.0.113.1"), eq(3L), eq(Duration.ofMillis(60000)),
+                                eq(2L))).thenReturn(ConsumptionProbe.rejected(1, 5500000000L, 30000000000L));
+
+                MockHttpServletResponse response = perform(filter, "POST", "/api/checkout", "203.0.113.1");
+
+                assertEquals(429, response.getStatus());
+                assertHeaders(response, "3", "1", "30", "3;w=60");
+                assertEquals("6", response.getHeader("Retry-After"));
+        }
+
+        @Test
+        void fallsBackToTheLocalBucketWhenRedisCantAnswer() throws Exception {
+                RateLimitFilter filter = filter("redis", ORDERS);
+
+                MockHttpServletResponse response = perform(filter, "POST", "/api/checkout", "203.0.113.1");
+
+                assertEquals(200, response.getStatus());
+                assertHeaders(response, "3", "1", "40", "3;w=60");
+        }
+
+        private static void assertHeaders(MockHttpServletResponse response, String limit, String remaining, String reset,
+                        String policy) {
+                assertEquals(limit, response.getHeader("RateLimit-Limit"));
+                assertEquals(remaining, response.getHeader("RateLimit-Remaining"));
+                assertEquals(reset, response.getHeader("RateLimit-Reset"));
+                assertEquals(policy, response.getHeader("RateLimit-Policy"));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Cache<String, ?> buckets(RateLimitFilter filter) {
+                return (Cache<String, ?>) ReflectionTestUtils.getField(filter, "buckets");
+        }
+
+        private RateLimitFilter filter(String mode, Map<String, String> properties) {
+                Map<String, String> policies = new HashMap<>(Map.of(
+                                "noptzy.rate-limit.policies.default.capacity", "2",
+                                "noptzy.rate-limit.policies.default.period", "60000"));
+                policies.putAll(properties);
+                MockEnvironment environment = new MockEnvironment();
+                policies.forEach(environment::setProperty);
+
+                StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of(
+                                "meters", meters,
+                                "tokenCache", tokenCache,
+                                "tokenVerifier", tokenVerifier,
+                                "redisRateLimiter", redisRateLimiter));
+                RateLimitFilter filter = new RateLimitFilter();
+                ReflectionTestUtils.setField(filter, "mode", mode);
+                ReflectionTestUtils.setField(filter, "maxBuckets", maxBuckets);
+                ReflectionTestUtils.setField(filter, "idleTtl", idleTtl);
+                ReflectionTestUtils.setField(filter, "policyFile", "");
+                ReflectionTestUtils.setField(filter, "environment", environment);
+                ReflectionTestUtils.setField(filter, "meterRegistry",
+                                beans.getBeanProvider(MeterRegistry.class));
+                ReflectionTestUtils.setField(filter, "redisRateLimiter", beans.getBeanProvider(RedisRateLimiter.class));
+                ReflectionTestUtils.setField(filter, "tokenCache", beans.getBeanProvider(TokenCache.class));
+                ReflectionTestUtils.setField(filter, "tokenVerifier", beans.getBeanProvider(TokenVerifier.class));
+                ReflectionTestUtils.invokeMethod(filter, "init");
+                return filter;
+        }
+
+        private static MockHttpServletResponse perform(RateLimitFilter filter, String token, String address)
+                        throws Exception {
+                return perform(filter, "GET", "/api/stores", token, address);
+        }
+
+        private static MockHttpServletResponse perform(RateLimitFilter filter, String method, String path,
+                        String address) throws Exception {
+                return perform(filter, method, path, null, address);
+        }
+
+        private static MockHttpServletResponse perform(RateLimitFilter filter, String method, String path, String token,
+                        String address) throws Exception {
+                MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+                request.setRemoteAddr(address);
+                if (token != null) {
+                        request.addHeader("Authorization", "Bearer " + token);
+                }
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(request, response, (req, res) -> {
+                });
+                return response;
+        }
+
+        private static String token(UUID userId, String secret) {
+                long now = System.currentTimeMillis();
+                return JWT.create()
+                                .withClaim("userId", userId.toString())
+                                .withIssuedAt(new Date(now))
+                                .withExpiresAt(new Date(now + 3600000))
+                                .sign(Algorithm.HMAC256(secret));
+        }
+}
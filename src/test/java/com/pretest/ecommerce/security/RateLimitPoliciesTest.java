@@ -0,0 +1,156 @@
+package com.pretest.ecommerce.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimitPoliciesTest {
+
+        @Test
+        void routesTakeMethodPatternAndCost() {
+                RateLimitPolicies policies = bind(Map.of(
+                                "orders.routes", "POST /api/transactions/checkout=5, /api/carts/** , GET /api/payments = 2",
+                                "orders.capacity", "30",
+                                "orders.period", "60000"));
+
+                assertCharge(policies, "POST", "/api/transactions/checkout", "orders", 5);
+                assertCharge(policies, "DELETE", "/api/carts/items/7", "orders", 1);
+                assertCharge(policies, "GET", "/api/payments", "orders", 2);
+        }
+
+        @Test
+        void methodIsMatchedCaseInsensitivelyInTheSpecButExactlyOnTheRequest() {
+                RateLimitPolicies policies = bind(Map.of(
+                                "orders.routes", "post /api/transactions/checkout",
+                                "orders.capacity", "30",
+                                "orders.period", "60000"));
+
+                assertCharge(policies, "POST", "/api/transactions/checkout", "orders", 1);
+                assertCharge(policies, "GET", "/api/transactions/checkout", "default", 1);
+        }
+
+        @Test
+        void routeWithoutCostTakesThePolicyCost() {
+                RateLimitPolicies policies = bind(Map.of(
+                                "uploads.routes", "POST /api/stores/*/products",
+                                "uploads.capacity", "20",
+                                "uploads.period", "60000",
+                                "uploads.cost", "4"));
+
+                assertCharge(policies, "POST", "/api/stores/3/products", "uploads", 4);
+        }
+
+        @Test
+        void unmatchedRequestsFallToTheDefaultPolicy() {
+                RateLimitPolicies configured = bind(Map.of(
+                                "default.capacity", "50",
+                                "default.period", "1000"));
+                RateLimitPolicies.Charge charge = configured.resolve(request("GET", "/api/stores"));
+                assertEquals("default", charge.policy().name());
+                assertEquals(50, charge.policy().capacity());
+                assertEquals(1000, charge.policy().period());
+
+                RateLimitPolicies.Charge fallback = bind(Map.of()).resolve(request("GET", "/api/stores"));
+                assertEquals(100, fallback.policy().capacity());
+                assertEquals(60000, fallback.policy().period());
+        }
+
+        @Test
+        void mostSpecificPatternWins() {
+                RateLimitPolicies policies = bind(Map.of(
+                                "wide.routes", "/api/**",
+                                "wide.capacity", "100",
+                                "wide.period", "60000",
+                                "stores.routes", "/api/stores/**",
+                                "stores.capacity", "50",
+                                "stores.period", "60000",
+                                "products.routes", "/api/stores/*/products",
+                                "products.capacity", "20",
+                                "products.period", "60000"));
+
+                assertCharge(policies, "GET", "/api/stores/3/products", "products", 1);
+                assertCharge(policies, "GET", "/api/stores/3", "stores", 1);
+                assertCharge(policies, "GET", "/api/carts", "wide", 1);
+        }
+
+        @Test
+        void methodQualifiedRouteWinsOverTheSamePatternWithoutMethod() {
+                RateLimitPolicies policies = bind(Map.of(
+                                "any.routes", "/api/payments",
+                                "any.capacity", "100",
+                                "any.period", "60000",
+                                "post.routes", "POST /api/payments=3",
+                                "post.capacity", "10",
+                                "post.period", "60000"));
+
+                assertCharge(policies, "POST", "/api/payments", "post", 3);
+                assertCharge(policies, "GET", "/api/payments", "any", 1);
+        }
+
+        @Test
+        void rejectsNonPositiveCost() {
+                IllegalArgumentException zero = assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.routes", "POST /api/payments=0",
+                                "orders.capacity", "30",
+                                "orders.period", "60000")));
+                assertEquals("Rate limit route POST /api/payments=0 needs a positive cost", zero.getMessage());
+
+                IllegalArgumentException negative = assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.routes", "POST /api/payments",
+                                "orders.capacity", "30",
+                                "orders.period", "60000",
+                                "orders.cost", "-1")));
+                assertEquals("Rate limit route POST /api/payments needs a positive cost", negative.getMessage());
+        }
+
+        @Test
+        void rejectsCostAboveCapacity() {
+                IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.routes", "POST /api/payments=31",
+                                "orders.capacity", "30",
+                                "orders.period", "60000")));
+                assertEquals("Rate limit route POST /api/payments=31 costs more than its capacity", exception.getMessage());
+        }
+
+        @Test
+        void rejectsCostThatIsNotANumber() {
+                IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.routes", "POST /api/payments=many",
+                                "orders.capacity", "30",
+                                "orders.period", "60000")));
+                assertEquals("Rate limit route POST /api/payments=many has a cost that isn't a number", exception.getMessage());
+        }
+
+        @Test
+        void rejectsNonPositiveCapacityOrPeriod() {
+                assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.capacity", "0",
+                                "orders.period", "60000")));
+                assertThrows(IllegalArgumentException.class, () -> bind(Map.of(
+                                "orders.capacity", "30",
+                                "orders.period", "0")));
+        }
+
+        private static RateLimitPolicies bind(Map<String, String> properties) {
+                Map<String, String> prefixed = new HashMap<>();
+                properties.forEach((key, value) -> prefixed.put(RateLimitPolicies.PROPERTY_PREFIX + "." + key, value));
+                return RateLimitPolicies.bind(new Binder(new MapConfigurationPropertySource(prefixed)));
+        }
+
+        private static void assertCharge(RateLimitPolicies policies, String method, String path, String policy, long tokens) {
+                RateLimitPolicies.Charge charge = policies.resolve(request(method, path));
+                assertEquals(policy, charge.policy().name(), method + " " + path);
+                assertEquals(tokens, charge.tokens(), method + " " + path);
+        }
+
+        private static MockHttpServletRequest request(String method, String path) {
+                return new MockHttpServletRequest(method, path);
+        }
+}
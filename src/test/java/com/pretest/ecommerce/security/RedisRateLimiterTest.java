@@ -0,0 +1,143 @@
+package com.pretest.ecommerce.security;
+
+import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The shared bucket script against the Redis on localhost:6379, and the back-off against a port
+ * nothing listens on. Every test uses a fresh key and deletes it afterwards.
+ */
+class RedisRateLimiterTest {
+
+        private static final Duration MINUTE = Duration.ofMinutes(1);
+
+        private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+        private LettuceConnectionFactory appConnectionFactory;
+
+        private RedisRateLimiter limiter;
+
+        private String key;
+
+        @BeforeEach
+        void setUp() {
+                key = "test:" + UUID.randomUUID();
+        }
+
+        @AfterEach
+        void tearDown() {
+                if (limiter != null) {
+                        StringRedisTemplate redisTemplate = (StringRedisTemplate) ReflectionTestUtils.getField(limiter,
+                                        "redisTemplate");
+                        try {
+                                redisTemplate.delete("rate_limit:" + key);
+                        } catch (RuntimeException ignored) {
+                                // the back-off tests point at a dead port
+                        }
+                        limiter.destroy();
+                }
+                appConnectionFactory.destroy();
+        }
+
+        @Test
+        void consumesUntilTheBucketRunsDry() {
+                limiter = limiter(6379, 60000);
+
+                ConsumptionProbe first = limiter.tryConsume(key, 3, MINUTE, 2);
+                ConsumptionProbe second = limiter.tryConsume(key, 3, MINUTE, 2);
+                ConsumptionProbe third = limiter.tryConsume(key, 3, MINUTE, 1);
+
+                assertTrue(first.isConsumed());
+                assertEquals(1, first.getRemainingTokens());
+                assertFalse(second.isConsumed());
+                assertEquals(1, second.getRemainingTokens());
+                assertTrue(third.isConsumed());
+                assertEquals(0, third.getRemainingTokens());
+        }
+
+        @Test
+        void reportsTheWaitForTheMissingTokens() {
+                limiter = limiter(6379, 60000);
+                limiter.tryConsume(key, 3, MINUTE, 3);
+
+                ConsumptionProbe rejected = limiter.tryConsume(key, 3, MINUTE, 2);
+
+                // two of three tokens a minute are missing: 40s, less the few ms that refilled since
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(rejected.getNanosToWaitForRefill());
+                long resetMillis = TimeUnit.NANOSECONDS.toMillis(rejected.getNanosToWaitForReset());
+                assertFalse(rejected.isConsumed());
+                assertTrue(waitMillis > 39000 && waitMillis <= 40000, "wait " + waitMillis);
+                assertTrue(resetMillis > 59000 && resetMillis <= 60000, "reset " + resetMillis);
+        }
+
+        @Test
+        void bucketExpiresOnceItWouldBeFullAgain() {
+                limiter = limiter(6379, 60000);
+                limiter.tryConsume(key, 60, MINUTE, 6);
+
+                StringRedisTemplate redisTemplate = (StringRedisTemplate) ReflectionTestUtils.getField(limiter,
+                                "redisTemplate");
+                long ttl = redisTemplate.getExpire("rate_limit:" + key, TimeUnit.MILLISECONDS);
+
+                // six seconds to refill six tokens, plus a second of slack
+                assertTrue(ttl > 6000 && ttl <= 7000, "ttl " + ttl);
+        }
+
+        @Test
+        void leavesRedisAloneForTheRetryIntervalAfterAFailure() throws Exception {
+                limiter = limiter(1, 200);
+
+                assertNull(limiter.tryConsume(key, 3, MINUTE, 1));
+                assertNull(limiter.tryConsume(key, 3, MINUTE, 1));
+                assertEquals(1, failures());
+
+                Thread.sleep(300);
+                assertNull(limiter.tryConsume(key, 3, MINUTE, 1));
+                assertEquals(2, failures());
+        }
+
+        @Test
+        void answersAgainOnceRedisIsBack() {
+                limiter = limiter(6379, 60000);
+                ReflectionTestUtils.setField(limiter, "unavailableUntil", System.currentTimeMillis() + 60000);
+                assertNull(limiter.tryConsume(key, 3, MINUTE, 1));
+
+                ReflectionTestUtils.setField(limiter, "unavailableUntil", 0L);
+                assertNotNull(limiter.tryConsume(key, 3, MINUTE, 1));
+                assertEquals(0, failures());
+        }
+
+        private RedisRateLimiter limiter(int port, long retryInterval) {
+                appConnectionFactory = new LettuceConnectionFactory("localhost", port);
+                RedisRateLimiter limiter = new RedisRateLimiter();
+                ReflectionTestUtils.setField(limiter, "redisConnectionFactory", appConnectionFactory);
+                ReflectionTestUtils.setField(limiter, "meterRegistry",
+                                new StaticListableBeanFactory(Map.of("meters", meters)).getBeanProvider(MeterRegistry.class));
+                ReflectionTestUtils.setField(limiter, "retryInterval", retryInterval);
+                ReflectionTestUtils.invokeMethod(limiter, "init");
+                return limiter;
+        }
+
+        private double failures() {
+                return meters.counter("rate.limit.redis.failures").count();
+        }
+}
@@ -0,0 +1,97 @@
+package com.pretest.ecommerce.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.verify;
+
+/**
+ * How long a verified token stays cached: until the TTL or the token's expiry, whichever is
+ * first, or until an invalidation from this node or another.
+ */
+class TokenCacheTest {
+
+        private StringRedisTemplate redisTemplate;
+
+        private TokenCache tokenCache;
+
+        @BeforeEach
+        void setUp() {
+                redisTemplate = Mockito.mock(StringRedisTemplate.class);
+                tokenCache = new TokenCache();
+                ReflectionTestUtils.setField(tokenCache, "redisTemplate", redisTemplate);
+                ReflectionTestUtils.setField(tokenCache, "maxSize", 100L);
+                ReflectionTestUtils.setField(tokenCache, "ttl", 200L);
+                ReflectionTestUtils.invokeMethod(tokenCache, "init");
+        }
+
+        @Test
+        void returnsAPrincipalUntilTheTtlPasses() throws Exception {
+                AuthPrincipal principal = principal(Duration.ofHours(1));
+                tokenCache.put("digest", principal);
+
+                assertSame(principal, tokenCache.get("digest"));
+
+                Thread.sleep(300);
+                assertNull(tokenCache.get("digest"));
+        }
+
+        @Test
+        void dropsAPrincipalWhenItsTokenExpiresBeforeTheTtl() throws Exception {
+                ReflectionTestUtils.setField(tokenCache, "ttl", 60000L);
+                ReflectionTestUtils.invokeMethod(tokenCache, "init");
+                tokenCache.put("digest", principal(Duration.ofMillis(100)));
+
+                Thread.sleep(200);
+
+                assertNull(tokenCache.get("digest"));
+        }
+
+        @Test
+        void neverCachesAnExpiredToken() {
+                tokenCache.put("digest", principal(Duration.ofSeconds(-1)));
+
+                assertNull(tokenCache.get("digest"));
+        }
+
+        @Test
+        void invalidationIsBroadcastToOtherNodes() {
+                tokenCache.put("digest", principal(Duration.ofHours(1)));
+
+                tokenCache.invalidate("digest");
+
+                assertNull(tokenCache.get("digest"));
+                verify(redisTemplate).convertAndSend(TokenCache.INVALIDATION_CHANNEL, "digest");
+        }
+
+        @Test
+        void dropsTheEntryNamedByAnInvalidationMessage() {
+                tokenCache.put("digest", principal(Duration.ofHours(1)));
+                AuthPrincipal other = principal(Duration.ofHours(1));
+                tokenCache.put("other", other);
+
+                tokenCache.onMessage(new DefaultMessage(TokenCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                                "digest".getBytes(StandardCharsets.UTF_8)), null);
+
+                assertNull(tokenCache.get("digest"));
+                assertSame(other, tokenCache.get("other"));
+        }
+
+        private static AuthPrincipal principal(Duration validFor) {
+                return AuthPrincipal.builder()
+                                .userId(UUID.randomUUID())
+                                .expiresAt(Instant.now().plus(validFor))
+                                .build();
+        }
+}
@@ -0,0 +1,86 @@
+package com.pretest.ecommerce.security;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class TokenDenylistTest {
+
+        @Test
+        void bloomFilterNeverMissesAnInsertedDigest() {
+                TokenDenylist.BloomFilter filter = new TokenDenylist.BloomFilter(1000, 0.01);
+                List<String> digests = digests(5000);
+
+                // five times the expected insertions: false positives climb, misses mustn't appear
+                digests.forEach(filter::put);
+
+                digests.forEach(digest -> assertTrue(filter.mightContain(digest), digest));
+        }
+
+        @Test
+        void bloomFilterRejectsMostDigestsItNeverSaw() {
+                TokenDenylist.BloomFilter filter = new TokenDenylist.BloomFilter(1000, 0.01);
+                digests(1000).forEach(filter::put);
+
+                long falsePositives = digests(10000).stream().filter(filter::mightContain).count();
+
+                assertTrue(falsePositives < 300, "false positives " + falsePositives);
+        }
+
+        @Test
+        void everythingMightBeRevokedBeforeTheFirstLoad() {
+                TokenDenylist denylist = denylist(Set.of());
+
+                assertTrue(denylist.mightBeRevoked(TokenDigest.of("any.token")));
+
+                denylist.rebuild();
+                assertFalse(denylist.mightBeRevoked(TokenDigest.of("any.token")));
+        }
+
+        @Test
+        void rebuildLoadsTheRevokedSet() {
+                String revoked = TokenDigest.of("revoked.token");
+                TokenDenylist denylist = denylist(Set.of(revoked));
+
+                denylist.rebuild();
+
+                assertTrue(denylist.mightBeRevoked(revoked));
+                assertFalse(denylist.mightBeRevoked(TokenDigest.of("live.token")));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static TokenDenylist denylist(Set<String> revoked) {
+                StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+                ZSetOperations<String, String> zSet = Mockito.mock(ZSetOperations.class);
+                when(redisTemplate.opsForZSet()).thenReturn(zSet);
+                when(zSet.rangeByScore(anyString(), anyDouble(), anyDouble())).thenReturn(new LinkedHashSet<>(revoked));
+
+                TokenDenylist denylist = new TokenDenylist();
+                ReflectionTestUtils.setField(denylist, "redisTemplate", redisTemplate);
+                ReflectionTestUtils.setField(denylist, "expectedInsertions", 1000);
+                ReflectionTestUtils.setField(denylist, "falsePositiveRate", 0.001);
+                return denylist;
+        }
+
+        private static List<String> digests(int count) {
+                List<String> digests = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                        digests.add(TokenDigest.of(UUID.randomUUID().toString()));
+                }
+                return digests;
+        }
+}
@@ -0,0 +1,187 @@
+package com.pretest.ecommerce.security;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The token registry's scripts against the Redis on localhost:6379. Every test works on a fresh
+ * user id and random tokens, and deletes its keys afterwards.
+ */
+class TokenStoreTest {
+
+        private static final long TTL = 60000;
+
+        private static LettuceConnectionFactory connectionFactory;
+
+        private static StringRedisTemplate redisTemplate;
+
+        private TokenStore tokenStore;
+
+        private String userId;
+
+        @BeforeAll
+        static void connect() {
+                connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+                connectionFactory.afterPropertiesSet();
+                redisTemplate = new StringRedisTemplate(connectionFactory);
+        }
+
+        @AfterAll
+        static void disconnect() {
+                connectionFactory.destroy();
+        }
+
+        @BeforeEach
+        void setUp() {
+                tokenStore = new TokenStore();
+                ReflectionTestUtils.setField(tokenStore, "redisTemplate", redisTemplate);
+                ReflectionTestUtils.setField(tokenStore, "legacyKeys", true);
+                userId = UUID.randomUUID().toString();
+        }
+
+        @AfterEach
+        void tearDown() {
+                tokenStore.revokeAll(userId);
+                redisTemplate.delete("user_sessions:" + userId);
+        }
+
+        @Test
+        void revokingTheRefreshTokenEndsItsSession() {
+                String access = token();
+                String refresh = token();
+                tokenStore.issue(userId, access, TTL, refresh, TTL);
+                assertEquals(Map.of(TokenDigest.of(refresh), sessionExpiry(refresh)), tokenStore.sessions(userId));
+
+                assertEquals(userId, tokenStore.revoke(refresh).userId());
+
+                assertFalse(tokenStore.exists(refresh));
+                assertTrue(tokenStore.sessions(userId).isEmpty());
+                assertNull(redisTemplate.opsForZSet().score("user_sessions:" + userId, "r:" + TokenDigest.of(refresh)));
+        }
+
+        @Test
+        void revokingEitherTokenEndsThePair() {
+                String access = token();
+                String refresh = token();
+                tokenStore.issue(userId, access, TTL, refresh, TTL);
+
+                TokenStore.Revocation revocation = tokenStore.revoke(access);
+
+                assertEquals(userId, revocation.userId());
+                assertEquals(Set.of(TokenDigest.of(refresh)), revocation.pair().keySet());
+                assertFalse(tokenStore.exists(access));
+                assertFalse(tokenStore.exists(refresh));
+                assertEquals(0, redisTemplate.opsForZSet().size("user_sessions:" + userId));
+
+                String otherAccess = token();
+                String otherRefresh = token();
+                tokenStore.issue(userId, otherAccess, TTL, otherRefresh, TTL);
+                assertEquals(Set.of(TokenDigest.of(otherAccess)), tokenStore.revoke(otherRefresh).pair().keySet());
+                assertFalse(tokenStore.exists(otherAccess));
+        }
+
+        @Test
+        void rotatingReplacesThePair() {
+                String access = token();
+                String refresh = token();
+                tokenStore.issue(userId, access, TTL, refresh, TTL);
+                String nextAccess = token();
+                String nextRefresh = token();
+
+                Map<String, Long> replaced = tokenStore.rotate(refresh, userId, nextAccess, TTL, nextRefresh, TTL);
+
+                assertEquals(Set.of(TokenDigest.of(refresh), TokenDigest.of(access)), replaced.keySet());
+                assertFalse(tokenStore.exists(refresh));
+                assertFalse(tokenStore.exists(access));
+                assertTrue(tokenStore.exists(nextAccess));
+                assertEquals(Set.of(TokenDigest.of(nextRefresh)), tokenStore.sessions(userId).keySet());
+                assertEquals(Set.of(TokenDigest.of(nextRefresh)), tokenStore.revoke(nextAccess).pair().keySet());
+        }
+
+        @Test
+        void aRefreshTokenRotatesOnce() {
+                String refresh = token();
+                tokenStore.issue(userId, token(), TTL, refresh, TTL);
+                String nextRefresh = token();
+                assertNotNull(tokenStore.rotate(refresh, userId, token(), TTL, nextRefresh, TTL));
+
+                String replayedAccess = token();
+                assertNull(tokenStore.rotate(refresh, userId, replayedAccess, TTL, token(), TTL));
+
+                assertFalse(tokenStore.exists(replayedAccess));
+                assertEquals(Set.of(TokenDigest.of(nextRefresh)), tokenStore.sessions(userId).keySet());
+        }
+
+        @Test
+        void legacyKeyIsHonouredAndMovedToItsDigest() {
+                String token = token();
+                redisTemplate.opsForValue().set("jwt_token:" + token, userId, Duration.ofMillis(TTL));
+
+                assertTrue(tokenStore.exists(token));
+
+                assertFalse(redisTemplate.hasKey("jwt_token:" + token));
+                assertEquals(userId, redisTemplate.opsForValue().get("jwt_digest:" + TokenDigest.of(token)));
+                long ttl = redisTemplate.getExpire("jwt_digest:" + TokenDigest.of(token), TimeUnit.MILLISECONDS);
+                assertTrue(ttl > 0 && ttl <= TTL, "ttl " + ttl);
+                assertTrue(tokenStore.exists(token));
+                assertEquals(userId, tokenStore.revoke(token).userId());
+        }
+
+        @Test
+        void legacyRefreshTokenRotates() {
+                String refresh = token();
+                redisTemplate.opsForValue().set("jwt_token:" + refresh, userId, Duration.ofMillis(TTL));
+                String nextAccess = token();
+
+                Map<String, Long> replaced = tokenStore.rotate(refresh, userId, nextAccess, TTL, token(), TTL);
+
+                assertEquals(Set.of(TokenDigest.of(refresh)), replaced.keySet());
+                assertFalse(redisTemplate.hasKey("jwt_token:" + refresh));
+                assertTrue(tokenStore.exists(nextAccess));
+        }
+
+        @Test
+        void legacyKeysAreIgnoredOnceSwitchedOff() {
+                String token = token();
+                redisTemplate.opsForValue().set("jwt_token:" + token, userId, Duration.ofMillis(TTL));
+                ReflectionTestUtils.setField(tokenStore, "legacyKeys", false);
+
+                try {
+                        assertFalse(tokenStore.exists(token));
+                        assertNull(tokenStore.revoke(token));
+                } finally {
+                        redisTemplate.delete("jwt_token:" + token);
+                }
+        }
+
+        @Test
+        void revokingAnUnknownTokenReturnsNull() {
+                assertNull(tokenStore.revoke(token()));
+        }
+
+        private long sessionExpiry(String refresh) {
+                return redisTemplate.opsForZSet().score("user_sessions:" + userId, "r:" + TokenDigest.of(refresh)).longValue();
+        }
+
+        private static String token() {
+                return "test." + UUID.randomUUID() + "." + UUID.randomUUID();
+        }
+}
@@ -0,0 +1,145 @@
+package com.pretest.ecommerce.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.pretest.ecommerce.dto.LoginRequest;
+import com.pretest.ecommerce.dto.RefreshTokenRequest;
+import com.pretest.ecommerce.dto.RegisterRequest;
+import com.pretest.ecommerce.dto.TokenResponse;
+import com.pretest.ecommerce.entity.User;
+import com.pretest.ecommerce.security.TokenDenylist;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Which tokens the stateless mode accepts: access tokens only, and none that was rotated away or
+ * logged out, on its own or as the other half of a pair. Runs against the configured database and
+ * Redis; the user is rolled back and their tokens revoked afterwards.
+ */
+@SpringBootTest(properties = {
+                "noptzy.search.index.enabled=false",
+                "noptzy.product.cache.enabled=false",
+                "noptzy.jwt.stateless=true"
+})
+@Transactional
+public class AuthServiceTest {
+
+        private static final String PASSWORD = "password123";
+
+        @Autowired
+        private AuthService authService;
+
+        @Autowired
+        private TokenDenylist tokenDenylist;
+
+        @Value("${noptzy.jwt.secret-key}")
+        private String jwtSecretKey;
+
+        @Value("${noptzy.jwt.refresh-token-expiration}")
+        private Long refreshTokenExpiration;
+
+        private User user;
+
+        @BeforeEach
+        void setUp() {
+                // loaded, so the denylist answers for itself instead of sending every token to Redis
+                tokenDenylist.rebuild();
+                String email = "auth" + UUID.randomUUID().toString().replace("-", "") + "@gmail.com";
+                user = authService.register(new RegisterRequest(email, "Auth Test", PASSWORD));
+        }
+
+        @AfterEach
+        void tearDown() {
+                authService.revokeAllSessions(user.getId());
+        }
+
+        @Test
+        void refreshTokenIsNotABearerToken() {
+                TokenResponse tokens = login();
+
+                assertEquals(user.getId(), authService.authenticate(bearer(tokens.getAccessToken())).getUserId());
+                assertUnauthorized(tokens.getRefreshToken());
+        }
+
+        @Test
+        void accessTokenDoesNotRefresh() {
+                TokenResponse tokens = login();
+
+                ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                                () -> authService.refreshToken(new RefreshTokenRequest(tokens.getAccessToken())));
+                assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatusCode());
+        }
+
+        @Test
+        void rotatedOutPairIsRejected() {
+                TokenResponse tokens = login();
+                authService.authenticate(bearer(tokens.getAccessToken()));
+
+                TokenResponse rotated = authService.refreshToken(new RefreshTokenRequest(tokens.getRefreshToken()));
+
+                assertUnauthorized(tokens.getRefreshToken());
+                assertUnauthorized(tokens.getAccessToken());
+                assertEquals(user.getId(), authService.authenticate(bearer(rotated.getAccessToken())).getUserId());
+        }
+
+        @Test
+        void refreshTokenWorksOnce() {
+                TokenResponse tokens = login();
+                authService.refreshToken(new RefreshTokenRequest(tokens.getRefreshToken()));
+
+                ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                                () -> authService.refreshToken(new RefreshTokenRequest(tokens.getRefreshToken())));
+                assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatusCode());
+        }
+
+        @Test
+        void logoutWithTheRefreshTokenEndsTheAccessToken() {
+                TokenResponse tokens = login();
+                authService.authenticate(bearer(tokens.getAccessToken()));
+
+                authService.logout(bearer(tokens.getRefreshToken()));
+
+                assertUnauthorized(tokens.getAccessToken());
+        }
+
+        @Test
+        void untypedTokenWithARefreshLifetimeIsNotABearerToken() {
+                long now = System.currentTimeMillis();
+                String token = JWT.create()
+                                .withSubject(user.getEmail())
+                                .withClaim("role", user.getRole())
+                                .withClaim("userId", user.getId().toString())
+                                .withIssuedAt(new Date(now))
+                                .withExpiresAt(new Date(now + refreshTokenExpiration))
+                                .sign(Algorithm.HMAC256(jwtSecretKey));
+
+                assertUnauthorized(token);
+        }
+
+        private TokenResponse login() {
+                return authService.login(new LoginRequest(user.getEmail(), PASSWORD));
+        }
+
+        private void assertUnauthorized(String token) {
+                ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                                () -> authService.authenticate(bearer(token)));
+                assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatusCode());
+        }
+
+        private static String bearer(String token) {
+                return "Bearer " + token;
+        }
+}
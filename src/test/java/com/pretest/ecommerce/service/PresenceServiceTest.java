@@ -0,0 +1,162 @@
+package com.pretest.ecommerce.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Presence writes and lookups against the Redis on localhost:6379. Every test uses fresh user
+ * ids and removes them from {@code user_last_seen} afterwards.
+ */
+class PresenceServiceTest {
+
+        private static final String LAST_SEEN_KEY = "user_last_seen";
+
+        private static LettuceConnectionFactory connectionFactory;
+
+        private static StringRedisTemplate redisTemplate;
+
+        private final List<UUID> users = new ArrayList<>();
+
+        @BeforeAll
+        static void connect() {
+                connectionFactory = new LettuceConnectionFactory("localhost", 6379);
+                connectionFactory.afterPropertiesSet();
+                redisTemplate = new StringRedisTemplate(connectionFactory);
+        }
+
+        @AfterAll
+        static void disconnect() {
+                connectionFactory.destroy();
+        }
+
+        @AfterEach
+        void tearDown() {
+                if (!users.isEmpty()) {
+                        redisTemplate.opsForZSet().remove(LAST_SEEN_KEY, users.stream().map(UUID::toString).toArray());
+                }
+        }
+
+        @Test
+        void touchesWithinTheWriteIntervalCoalesceIntoOneWrite() {
+                PresenceService presence = presence();
+                UUID userId = user();
+
+                presence.touch(userId);
+                long firstSeen = System.currentTimeMillis();
+                presence.touch(userId);
+                presence.touch(userId);
+                assertEquals(1, pending(presence).size());
+
+                presence.flush();
+                Double lastSeen = lastSeen(userId);
+                assertTrue(lastSeen <= firstSeen, "last seen " + lastSeen);
+                assertTrue(pending(presence).isEmpty());
+
+                presence.touch(userId);
+                assertTrue(pending(presence).isEmpty());
+                presence.flush();
+                assertEquals(lastSeen, lastSeen(userId));
+        }
+
+        @Test
+        void lateFlushNeverMovesLastSeenBackwards() throws Exception {
+                PresenceService slowNode = presence();
+                PresenceService fastNode = presence();
+                UUID userId = user();
+
+                slowNode.touch(userId);
+                Thread.sleep(10);
+                fastNode.touch(userId);
+                fastNode.flush();
+                Double latest = lastSeen(userId);
+
+                slowNode.flush();
+
+                assertEquals(latest, lastSeen(userId));
+        }
+
+        @Test
+        void nothingIsWrittenUntilTheFlush() {
+                PresenceService presence = presence();
+                UUID userId = user();
+
+                presence.touch(userId);
+                assertNull(lastSeen(userId));
+                assertFalse(presence.isOnline(userId));
+
+                presence.flush();
+                assertTrue(presence.isOnline(userId));
+        }
+
+        @Test
+        void findsOnlyTheUsersSeenWithinTheWindow() {
+                PresenceService presence = presence();
+                UUID online = user();
+                UUID idle = user();
+                UUID neverSeen = user();
+                presence.touch(online);
+                presence.flush();
+                redisTemplate.opsForZSet().add(LAST_SEEN_KEY, idle.toString(), System.currentTimeMillis() - 600000);
+
+                assertEquals(Set.of(online), presence.findOnline(List.of(online, idle, neverSeen, online)));
+                assertEquals(Set.of(online, idle), presence.findOnline(List.of(online, idle, neverSeen),
+                                Duration.ofHours(1)));
+                assertEquals(Set.of(), presence.findOnline(List.of()));
+        }
+
+        @Test
+        void clearTakesTheUserOfflineAtOnce() {
+                PresenceService presence = presence();
+                UUID userId = user();
+                presence.touch(userId);
+                presence.flush();
+
+                presence.clear(userId);
+
+                assertFalse(presence.isOnline(userId));
+                presence.touch(userId);
+                assertEquals(1, pending(presence).size());
+        }
+
+        private PresenceService presence() {
+                PresenceService presence = new PresenceService();
+                ReflectionTestUtils.setField(presence, "redisTemplate", redisTemplate);
+                ReflectionTestUtils.setField(presence, "onlineWindow", 300000L);
+                ReflectionTestUtils.setField(presence, "writeInterval", 60000L);
+                ReflectionTestUtils.setField(presence, "retention", 86400000L);
+                ReflectionTestUtils.invokeMethod(presence, "init");
+                return presence;
+        }
+
+        private UUID user() {
+                UUID userId = UUID.randomUUID();
+                users.add(userId);
+                return userId;
+        }
+
+        private static Double lastSeen(UUID userId) {
+                return redisTemplate.opsForZSet().score(LAST_SEEN_KEY, userId.toString());
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<UUID, Long> pending(PresenceService presence) {
+                return (Map<UUID, Long>) ReflectionTestUtils.getField(presence, "pending");
+        }
+}
@@ -0,0 +1,175 @@
+package com.pretest.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.pretest.ecommerce.dto.ProductResponse;
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.entity.Transaction;
+import com.pretest.ecommerce.entity.TransactionDetail;
+import com.pretest.ecommerce.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rating a product evicts every cached product of its store, once the rating commits: from
+ * Redis, from this node's local tier, and through the eviction channel from another node's.
+ * Runs against the configured database and Redis; its rows are committed, so they are deleted
+ * afterwards.
+ */
+@SpringBootTest(properties = {
+                "noptzy.search.index.enabled=false",
+                "noptzy.product.cache.enabled=true"
+})
+public class ProductCacheTest {
+
+        private static final String PRODUCT_PREFIX = "product_cache:product:";
+
+        @Autowired
+        private ProductService productService;
+
+        @Autowired
+        private ProductCache productCache;
+
+        @Autowired
+        private StringRedisTemplate redisTemplate;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private RedisMessageListenerContainer listenerContainer;
+
+        @Autowired
+        private EntityManager entityManager;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        private ProductFixture fixture;
+
+        private Product rated;
+
+        private Product sibling;
+
+        private User buyer;
+
+        private Transaction purchase;
+
+        private ProductCache otherNode;
+
+        @BeforeEach
+        void setUp() {
+                transactionTemplate.executeWithoutResult(status -> {
+                        fixture = new ProductFixture(entityManager, "cache");
+                        rated = fixture.add("100.00", 0.0, 0);
+                        sibling = fixture.add("200.00", 0.0, 0);
+
+                        buyer = new User();
+                        buyer.setEmail("buyer" + fixture.word + "@gmail.com");
+                        buyer.setPassword("password");
+                        buyer.setName("Buyer");
+                        entityManager.persist(buyer);
+
+                        purchase = new Transaction();
+                        purchase.setInvoiceNumber("INV-" + fixture.word);
+                        purchase.setTransactionDate(LocalDateTime.now());
+                        purchase.setTotalAmount(new BigDecimal("100.00"));
+                        purchase.setStatus("PAID");
+                        purchase.setUser(buyer);
+                        purchase.setStore(fixture.store);
+                        entityManager.persist(purchase);
+
+                        TransactionDetail detail = new TransactionDetail();
+                        detail.setProductNameSnapshot(rated.getName());
+                        detail.setQuantity(1);
+                        detail.setPriceAtPurchase(new BigDecimal("100.00"));
+                        detail.setSubtotal(new BigDecimal("100.00"));
+                        detail.setTransaction(purchase);
+                        detail.setProduct(rated);
+                        entityManager.persist(detail);
+                });
+
+                otherNode = new ProductCache();
+                ReflectionTestUtils.setField(otherNode, "enabled", true);
+                ReflectionTestUtils.setField(otherNode, "maxSize", 100L);
+                ReflectionTestUtils.setField(otherNode, "localTtl", 60000L);
+                ReflectionTestUtils.setField(otherNode, "redisTtl", 60000L);
+                ReflectionTestUtils.setField(otherNode, "redisTemplate", redisTemplate);
+                ReflectionTestUtils.setField(otherNode, "objectMapper", objectMapper);
+                ReflectionTestUtils.setField(otherNode, "meterRegistry",
+                                new StaticListableBeanFactory(Map.of()).getBeanProvider(MeterRegistry.class));
+                ReflectionTestUtils.invokeMethod(otherNode, "init");
+                listenerContainer.addMessageListener(otherNode, new ChannelTopic(ProductCache.EVICTION_CHANNEL));
+        }
+
+        @AfterEach
+        void tearDown() {
+                listenerContainer.removeMessageListener(otherNode);
+                productCache.evictStore(fixture.store.getId());
+                jdbcTemplate.update("DELETE FROM transaction_details WHERE transaction_id = ?", purchase.getId());
+                jdbcTemplate.update("DELETE FROM transactions WHERE id = ?", purchase.getId());
+                jdbcTemplate.update("DELETE FROM products WHERE store_id = ?", fixture.store.getId());
+                jdbcTemplate.update("DELETE FROM stores WHERE id = ?", fixture.store.getId());
+                jdbcTemplate.update("DELETE FROM users WHERE id IN (?, ?)", fixture.seller.getId(), buyer.getId());
+        }
+
+        @Test
+        void ratingEvictsTheWholeStoreOnceItCommits() throws Exception {
+                productService.get(rated.getId());
+                productService.get(sibling.getId());
+                otherNode.get(sibling.getId(), id -> {
+                        throw new AssertionError("the other node should read the product from Redis");
+                });
+                assertTrue(cached(productCache).containsKey(sibling.getId()));
+                assertTrue(redisTemplate.hasKey(PRODUCT_PREFIX + sibling.getId()));
+
+                transactionTemplate.executeWithoutResult(status -> {
+                        productService.rateProduct(buyer, rated.getId(), 5.0);
+                        // nothing is evicted before the rating is visible to a reload
+                        assertTrue(cached(productCache).containsKey(sibling.getId()));
+                        assertTrue(redisTemplate.hasKey(PRODUCT_PREFIX + sibling.getId()));
+                });
+
+                assertFalse(cached(productCache).containsKey(sibling.getId()));
+                assertFalse(cached(productCache).containsKey(rated.getId()));
+                assertFalse(redisTemplate.hasKey(PRODUCT_PREFIX + sibling.getId()));
+                assertFalse(redisTemplate.hasKey(PRODUCT_PREFIX + rated.getId()));
+                for (int i = 0; i < 50 && cached(otherNode).containsKey(sibling.getId()); i++) {
+                        Thread.sleep(100);
+                }
+                assertFalse(cached(otherNode).containsKey(sibling.getId()));
+
+                ProductResponse reloaded = productService.get(sibling.getId());
+                assertNotNull(reloaded.getStoreRating());
+                assertEquals(0, new BigDecimal("2.5").compareTo(reloaded.getStoreRating()));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<Long, ProductResponse> cached(ProductCache cache) {
+                return ((Cache<Long, ProductResponse>) ReflectionTestUtils.getField(cache, "local")).asMap();
+        }
+}
@@ -0,0 +1,65 @@
+package com.pretest.ecommerce.service;
+
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.entity.Store;
+import com.pretest.ecommerce.entity.User;
+import jakarta.persistence.EntityManager;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * A seller with one store, and products added to it, persisted in the caller's transaction.
+ * Every name carries a random {@link #word}, so a test can find its own rows among the rest.
+ */
+class ProductFixture {
+
+        final String word;
+
+        final User seller;
+
+        final Store store;
+
+        private final EntityManager entityManager;
+
+        private int products;
+
+        ProductFixture(EntityManager entityManager, String prefix) {
+                this.entityManager = entityManager;
+                word = prefix + UUID.randomUUID().toString().replace("-", "");
+
+                seller = new User();
+                seller.setEmail(word + "@gmail.com");
+                seller.setPassword("password");
+                seller.setName("Seller " + prefix);
+                seller.setRole("SELLER");
+                entityManager.persist(seller);
+
+                store = new Store();
+                store.setName("Store " + word);
+                store.setLocation("Jakarta");
+                store.setRating(BigDecimal.ZERO);
+                store.setIsOnline(true);
+                store.setUser(seller);
+                entityManager.persist(store);
+        }
+
+        /**
+         * A product named {@code "<word> Product <n>"} and described {@code "Long description <n>"},
+         * n counting from 0.
+         */
+        Product add(String price, double rating, int soldFor) {
+                Product product = new Product();
+                product.setName(word + " Product " + products);
+                product.setDescription("Long description " + products);
+                product.setPrice(new BigDecimal(price));
+                product.setStock(10);
+                product.setCategory("Fashion");
+                product.setSoldFor(soldFor);
+                product.setRating(rating);
+                product.setStore(store);
+                entityManager.persist(product);
+                products++;
+                return product;
+        }
+}
@@ -0,0 +1,122 @@
+package com.pretest.ecommerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pretest.ecommerce.dto.ProductDocument;
+import com.pretest.ecommerce.dto.SearchProductRequest;
+import com.pretest.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+class ProductIndexTest {
+
+        private ProductIndex index;
+
+        @BeforeEach
+        void setUp() {
+                ProductRepository repository = Mockito.mock(ProductRepository.class);
+                when(repository.findDocuments(anyLong(), any(Pageable.class))).thenReturn(List.of(
+                                document(1, "Kemeja Batik Pria"),
+                                document(2, "Kemeja Flanel"),
+                                document(3, "Celana Batik"),
+                                document(4, "Sepatu Kulit"),
+                                document(5, "Tas kulit-batik")));
+
+                index = new ProductIndex();
+                ReflectionTestUtils.setField(index, "enabled", true);
+                ReflectionTestUtils.setField(index, "batchSize", 100);
+                ReflectionTestUtils.setField(index, "productRepository", repository);
+                ReflectionTestUtils.setField(index, "redisTemplate", Mockito.mock(StringRedisTemplate.class));
+                ReflectionTestUtils.setField(index, "objectMapper", new ObjectMapper());
+                index.rebuild();
+        }
+
+        @Test
+        void matchesNamesContainingTheWord() {
+                assertEquals(List.of(1L, 3L, 5L), ids("batik", null));
+                assertEquals(List.of(1L, 2L), ids("KEMEJA", null));
+                assertEquals(List.of(1L, 3L, 5L), ids("ati", null));
+                assertEquals(List.of(4L), ids("tu", null));
+                assertEquals(List.of(4L, 5L), ids("ulit", null));
+                assertEquals(List.of(), ids("zzzz", null));
+                assertEquals(List.of(), ids("batikk", null));
+        }
+
+        @Test
+        void leavesPhrasesToTheDatabase() {
+                assertNull(search("kemeja batik", null));
+                assertNull(search("kemeja batik", ProductService.TERMS_PHRASE));
+        }
+
+        @Test
+        void matchesAllTerms() {
+                assertEquals(List.of(1L), ids("kemeja batik", ProductService.TERMS_ALL));
+                assertEquals(List.of(5L), ids("batik, kulit", ProductService.TERMS_ALL));
+                assertEquals(List.of(), ids("kemeja sepatu", ProductService.TERMS_ALL));
+        }
+
+        @Test
+        void matchesAnyTerm() {
+                assertEquals(List.of(1L, 2L, 4L, 5L), ids("kemeja kulit", ProductService.TERMS_ANY));
+                assertEquals(List.of(4L), ids("sepatu zzzz", ProductService.TERMS_ANY));
+        }
+
+        @Test
+        void findsWordsAddedAndForgetsWordsRemoved() {
+                index.changed(document(2, "Kemeja Flanel"), document(2, "Kemeja Denim"));
+                index.changed(null, document(6, "Jaket Flanel"));
+
+                assertEquals(List.of(2L), ids("denim", null));
+                assertEquals(List.of(6L), ids("flanel", null));
+
+                index.changed(document(6, "Jaket Flanel"), null);
+                assertEquals(List.of(), ids("flanel", null));
+
+                index.changed(document(4, "Sepatu Kulit"), document(4, "Sepatu Flanel"));
+                assertEquals(List.of(4L), ids("lane", null));
+        }
+
+        @Test
+        void facetsRejectPhrasesButTakeTerms() {
+                Set<String> facets = Set.of(ProductIndex.FACET_CATEGORY);
+                Pageable pageable = PageRequest.of(0, 10);
+
+                assertThrows(ResponseStatusException.class,
+                                () -> index.facets(request("kemeja batik", null), facets, pageable));
+                ProductIndex.Facets result = index.facets(request("kemeja batik", ProductService.TERMS_ANY), facets, pageable);
+                assertEquals(4, result.ids().getTotalElements());
+        }
+
+        private List<Long> ids(String name, String terms) {
+                return search(name, terms).getContent();
+        }
+
+        private Page<Long> search(String name, String terms) {
+                return index.search(request(name, terms), null, PageRequest.of(0, 10));
+        }
+
+        private static SearchProductRequest request(String name, String terms) {
+                return SearchProductRequest.builder().name(name).terms(terms).build();
+        }
+
+        private static ProductDocument document(long id, String name) {
+                return new ProductDocument(id, name, "Fashion", null, new BigDecimal("10000"), 1L);
+        }
+}
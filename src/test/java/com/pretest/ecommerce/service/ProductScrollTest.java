@@ -0,0 +1,146 @@
+package com.pretest.ecommerce.service;
+
+import com.pretest.ecommerce.dto.ProductResponse;
+import com.pretest.ecommerce.dto.SearchProductRequest;
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.entity.Store;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * Scrolling a store's products page by page in every sort, over keys with long runs of ties, so
+ * pages end in the middle of a run. The pages together must be the whole listing in order, each
+ * row once. Runs against the configured database in a transaction that is rolled back.
+ */
+@SpringBootTest(properties = {
+                "noptzy.search.index.enabled=false",
+                "noptzy.product.cache.enabled=false"
+})
+@Transactional
+public class ProductScrollTest {
+
+        private static final int LIMIT = 3;
+
+        private static final LocalDateTime EARLIER = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+        private static final LocalDateTime LATER = LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123456000);
+
+        @Autowired
+        private ProductService productService;
+
+        @Autowired
+        private EntityManager entityManager;
+
+        private Store store;
+
+        private final List<Row> rows = new ArrayList<>();
+
+        @BeforeEach
+        void setUp() {
+                ProductFixture fixture = new ProductFixture(entityManager, "scroll");
+                store = fixture.store;
+
+                add(fixture, "100.00", 4.5, 10, EARLIER);
+                add(fixture, "100.00", 4.5, 10, EARLIER);
+                add(fixture, "100.00", 3.0, 5, LATER);
+                add(fixture, "250.50", 3.0, 5, LATER);
+                add(fixture, "250.50", 3.0, 5, LATER);
+                add(fixture, "99.99", 5.0, 0, EARLIER.minusDays(1));
+                add(fixture, "100.00", 4.5, 10, EARLIER);
+
+                entityManager.flush();
+                for (Row row : rows) {
+                        // created_at is set by auditing on insert, so the ties are written afterwards
+                        entityManager.createNativeQuery("UPDATE products SET created_at = ?1 WHERE id = ?2")
+                                        .setParameter(1, row.createdAt())
+                                        .setParameter(2, row.id())
+                                        .executeUpdate();
+                }
+                entityManager.clear();
+        }
+
+        @Test
+        void scrollsById() {
+                assertScrolls(null, Comparator.comparing(Row::id), null);
+        }
+
+        @Test
+        void scrollsByPrice() {
+                assertScrolls("price", Comparator.comparing(Row::price).thenComparing(Row::id), BigDecimal.class);
+        }
+
+        @Test
+        void scrollsByRating() {
+                assertScrolls("rating", Comparator.comparing(Row::rating).thenComparing(Row::id).reversed(),
+                                Double.class);
+        }
+
+        @Test
+        void scrollsBySoldFor() {
+                assertScrolls("soldFor", Comparator.comparing(Row::soldFor).thenComparing(Row::id).reversed(),
+                                Integer.class);
+        }
+
+        @Test
+        void scrollsByNewest() {
+                assertScrolls("newest", Comparator.comparing(Row::createdAt).thenComparing(Row::id).reversed(),
+                                LocalDateTime.class);
+        }
+
+        /**
+         * Scrolls from the first page to the last, checking each cursor reads back with the key
+         * type of the sort, and that the rows seen are all the rows in {@code order}.
+         */
+        private void assertScrolls(String sort, Comparator<Row> order, Class<?> keyType) {
+                List<Long> expected = rows.stream().sorted(order).map(Row::id).toList();
+                SearchProductRequest request = new SearchProductRequest();
+                request.setStoreId(store.getId());
+                request.setSort(sort);
+                request.setCursor("");
+                request.setLimit(LIMIT);
+
+                List<Long> seen = new ArrayList<>();
+                int pages = 0;
+                String cursor;
+                do {
+                        Slice<ProductResponse> page = productService.scroll(request);
+                        page.forEach(product -> seen.add(product.getId()));
+                        pages++;
+
+                        cursor = productService.nextCursor(request, page);
+                        if (cursor != null) {
+                                ProductSort.Cursor parsed = ProductSort.of(sort).parse(cursor);
+                                assertEquals(page.getContent().get(page.getNumberOfElements() - 1).getId(), parsed.id());
+                                if (keyType != null) {
+                                        assertInstanceOf(keyType, parsed.key());
+                                }
+                                request.setCursor(cursor);
+                        }
+                } while (cursor != null);
+
+                assertEquals(expected, seen);
+                assertEquals((rows.size() + LIMIT - 1) / LIMIT, pages);
+        }
+
+        private void add(ProductFixture fixture, String price, double rating, int soldFor, LocalDateTime createdAt) {
+                Product product = fixture.add(price, rating, soldFor);
+                rows.add(new Row(product.getId(), new BigDecimal(price), rating, soldFor, createdAt));
+        }
+
+        private record Row(Long id, BigDecimal price, double rating, int soldFor, LocalDateTime createdAt) {
+        }
+}
@@ -0,0 +1,144 @@
+package com.pretest.ecommerce.service;
+
+import com.pretest.ecommerce.dto.ProductResponse;
+import com.pretest.ecommerce.dto.SearchProductRequest;
+import com.pretest.ecommerce.entity.Product;
+import com.pretest.ecommerce.entity.Store;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * How many SQL statements a product listing takes: one per page, however many rows and stores
+ * it shows, and two for the ranked search modes (the ids, then their listings). Runs against the
+ * configured database in a transaction that is rolled back.
+ */
+@SpringBootTest(properties = {
+                "noptzy.search.index.enabled=false",
+                "noptzy.product.cache.enabled=false",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + "com.pretest.ecommerce.service.ProductServiceQueryCountTest$StatementCounter"
+})
+@Transactional
+public class ProductServiceQueryCountTest {
+        @Autowired
+        private ProductService productService;
+
+        @Autowired
+        private EntityManager entityManager;
+
+        private String word;
+
+        private Store store;
+
+        private Product product;
+
+        @BeforeEach
+        void setUp() {
+                ProductFixture fixture = new ProductFixture(entityManager, "querycount");
+                word = fixture.word;
+                store = fixture.store;
+                for (int i = 0; i < 3; i++) {
+                        product = fixture.add(String.valueOf(10000 + i), 0.0, i);
+                }
+
+                entityManager.flush();
+                entityManager.clear();
+                StatementCounter.reset();
+        }
+
+        @Test
+        void searchTakesOneStatement() {
+                Slice<ProductResponse> result = productService.search(request(null, "none"));
+
+                assertEquals(1, StatementCounter.count());
+                assertEquals(3, result.getNumberOfElements());
+                assertEquals(store.getName(), result.getContent().get(0).getStoreName());
+                assertNull(result.getContent().get(0).getDescription());
+        }
+
+        @Test
+        void sortedSearchTakesOneStatement() {
+                Slice<ProductResponse> result = productService.search(request("price", "none"));
+
+                assertEquals(1, StatementCounter.count());
+                assertEquals(new BigDecimal("10000.00"), result.getContent().get(0).getPrice());
+        }
+
+        @Test
+        void scrollTakesOneStatement() {
+                SearchProductRequest request = request("soldFor", null);
+                request.setCursor("");
+                request.setLimit(2);
+
+                Slice<ProductResponse> result = productService.scroll(request);
+
+                assertEquals(1, StatementCounter.count());
+                assertEquals(2, result.getNumberOfElements());
+        }
+
+        @Test
+        void fullTextSearchTakesTwoStatements() {
+                SearchProductRequest request = request(null, "none");
+                request.setStoreId(null);
+                request.setName(word);
+                request.setMode(ProductService.SEARCH_FULLTEXT);
+
+                Slice<ProductResponse> result = productService.search(request);
+
+                assertEquals(2, StatementCounter.count());
+                assertEquals(3, result.getNumberOfElements());
+                assertEquals(store.getName(), result.getContent().get(0).getStoreName());
+        }
+
+        @Test
+        void getTakesOneStatement() {
+                ProductResponse response = productService.get(product.getId());
+
+                assertEquals(1, StatementCounter.count());
+                assertEquals("Long description 2", response.getDescription());
+                assertEquals(store.getName(), response.getStoreName());
+        }
+
+        private SearchProductRequest request(String sort, String count) {
+                SearchProductRequest request = new SearchProductRequest();
+                request.setStoreId(store.getId());
+                request.setSort(sort);
+                request.setCount(count);
+                return request;
+        }
+
+        /**
+         * Counts the statements Hibernate prepares on the calling thread, so scheduled jobs don't.
+         */
+        public static class StatementCounter implements StatementInspector {
+
+                private static final ThreadLocal<List<String>> STATEMENTS = ThreadLocal.withInitial(ArrayList::new);
+
+                static void reset() {
+                        STATEMENTS.get().clear();
+                }
+
+                static int count() {
+                        return STATEMENTS.get().size();
+                }
+
+                @Override
+                public String inspect(String sql) {
+                        STATEMENTS.get().add(sql);
+                        return sql;
+                }
+        }
+}